@@ -8,6 +8,7 @@ plugins {
     `java-library`
     `maven-publish`
     id("io.ktor.plugin") version "2.3.1"
+    id("me.champeau.jmh") version "0.7.1"
 }
 
 application {
@@ -31,6 +32,13 @@ dependencies {
     annotationProcessor("org.projectlombok:lombok:1.18.26")
 }
 
+// Benchmarks live in src/jmh/java and are run with `./gradlew jmh`.
+// The GC profiler reports the allocation rate next to the timings.
+jmh {
+    jmhVersion.set("1.36")
+    profilers.add("gc")
+}
+
 ktor {
     fatJar {
         archiveFileName.set("2048.jar")
@@ -0,0 +1,77 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+Measures a fixed-depth search for a few sizes of the transposition table. The table is
+cleared before every invocation, so the cache hits reported for each iteration only count
+positions repeated within a single search and not ones left over from the last one. The hit
+rate is the ratio of the two counters.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpectimaxSolverBenchmark {
+  // A mid-game position with a mix of small and large tiles and a few empty cells.
+  private static final long BOARD = 0x1000_2310_5432_9876L;
+
+  @Param({"4"})
+  public int depth;
+
+  @Param({"12", "16", "20", "24"})
+  public int tableSizeLog2;
+
+  private TranspositionTable table;
+  private ExpectimaxSolver solver;
+
+  @Setup(Level.Trial)
+  public void createSolver() {
+    table = new DirectMappedTranspositionTable(tableSizeLog2);
+    solver = new ExpectimaxSolver(new WeightedHeuristic(), table);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTable() {
+    table.clear();
+  }
+
+  @TearDown(Level.Iteration)
+  public void resetStatistics() {
+    table.resetStatistics();
+  }
+
+  @Benchmark
+  public Optional<Direction> bestMove(CacheCounter cache) {
+    Optional<Direction> move = solver.bestMove(BOARD, depth);
+    cache.cacheLookups = table.getLookups();
+    cache.cacheHits = table.getHits();
+    return move;
+  }
+
+  /* The table's statistics so far in the iteration, since they are only reset after it. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class CacheCounter {
+    public long cacheLookups;
+    public long cacheHits;
+  }
+}
@@ -0,0 +1,84 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+Measures how the parallel search scales with the number of worker threads. The speedup for
+n threads is the time of the sequential benchmark divided by the time of the parallel one
+with threads = n. The run with a single thread shows the overhead of forking tasks and
+of the shared table compared to the sequential solver.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelExpectimaxSolverBenchmark {
+  // A mid-game position with a mix of small and large tiles and a few empty cells.
+  private static final long BOARD = 0x1000_2310_5432_9876L;
+  private static final int TABLE_SIZE_LOG2 = 22;
+
+  @Param({"5"})
+  public int depth;
+
+  @Param({"1", "2", "4", "8", "16"})
+  public int threads;
+
+  private ForkJoinPool pool;
+  private TranspositionTable sequentialTable;
+  private SharedTranspositionTable sharedTable;
+  private ExpectimaxSolver sequentialSolver;
+  private ParallelExpectimaxSolver parallelSolver;
+
+  @Setup(Level.Trial)
+  public void createSolvers() {
+    pool = new ForkJoinPool(threads);
+    sequentialTable = new DirectMappedTranspositionTable(TABLE_SIZE_LOG2);
+    sharedTable = new SharedTranspositionTable(TABLE_SIZE_LOG2);
+    sequentialSolver = new ExpectimaxSolver(new WeightedHeuristic(), sequentialTable);
+    parallelSolver =
+        new ParallelExpectimaxSolver(
+            new WeightedHeuristic(),
+            sharedTable,
+            pool,
+            ParallelExpectimaxSolver.DEFAULT_SPLIT_LAYERS);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTables() {
+    sequentialTable.clear();
+    sharedTable.clear();
+  }
+
+  @TearDown(Level.Trial)
+  public void shutDownPool() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Optional<Direction> sequential() {
+    return sequentialSolver.bestMove(BOARD, depth);
+  }
+
+  @Benchmark
+  public Optional<Direction> parallel() {
+    return parallelSolver.bestMove(BOARD, depth);
+  }
+}
@@ -0,0 +1,53 @@
+package clean2048.engine;
+
+import java.util.SplittableRandom;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+A randomly populated board shared by the engine benchmarks. The board is generated from
+a fixed seed, so that every run (and every fork) measures the same positions.
+*/
+@State(Scope.Thread)
+public class BenchmarkBoard {
+  private static final long SEED = 2048;
+  private static final int HIGHEST_EXPONENT = 8;
+
+  @Param({"4", "8", "32", "128"})
+  public int dimension;
+
+  @Param({"SPARSE", "NEAR_FULL"})
+  public Occupancy occupancy;
+
+  Tile[][] grid;
+  GameEngine engine;
+
+  @Setup(Level.Trial)
+  public void createBoard() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    grid = GridUtil.initialiseGrid(dimension);
+    for (Tile[] row : grid) {
+      for (int x = 0; x < dimension; x++) {
+        if (random.nextDouble() < occupancy.fractionOfOccupiedCells) {
+          row[x] = new Tile(1 << (1 + random.nextInt(HIGHEST_EXPONENT)));
+        }
+      }
+    }
+    engine = new GameEngine(dimension, new SplittableRandom(SEED));
+    engine.setGrid(grid);
+  }
+
+  public enum Occupancy {
+    SPARSE(0.1),
+    NEAR_FULL(0.9);
+
+    private final double fractionOfOccupiedCells;
+
+    Occupancy(double fractionOfOccupiedCells) {
+      this.fractionOfOccupiedCells = fractionOfOccupiedCells;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+
+  @Benchmark
+  public GameEngine takeTurn(TurnBoard board) {
+    board.engine.takeTurn(board.direction);
+    return board.engine;
+  }
+
+  @Benchmark
+  public Tile[] mergeLeft(BenchmarkBoard board) {
+    return board.engine.mergeLeft(board.grid[0]);
+  }
+
+  @Benchmark
+  public boolean isGameOver(FreshBoard board) {
+    return board.engine.isGameOver();
+  }
+
+  @Benchmark
+  public Set<Direction> legalMoves(FreshBoard board) {
+    return board.engine.legalMoves();
+  }
+
+  @Benchmark
+  public int[][] getSimplifiedGrid(BenchmarkBoard board) {
+    return board.engine.getSimplifiedGrid();
+  }
+
+  /* takeTurn changes the board, and legal moves are cached once computed (by legalMoves and
+   * isGameOver alike), so each invocation needs to start from a fresh copy of the board.
+   * Otherwise after a few invocations we would only be measuring moves that have nothing left
+   * to shift, or cache lookups.
+   *
+   * The setup runs on the benchmark thread, so the GC profiler would count a new engine per
+   * invocation as allocated by the benchmark. Instead the engine of the trial is reset in place
+   * by setGrid, which copies into its existing arrays and allocates nothing. Timing every
+   * invocation on its own still adds a few nanoseconds, which shows on the smallest boards,
+   * so compare those results between commits rather than as absolute times.
+   */
+  @State(Scope.Thread)
+  public static class FreshBoard extends BenchmarkBoard {
+    @Setup(Level.Invocation)
+    public void resetBoard() {
+      engine.setGrid(grid);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TurnBoard extends FreshBoard {
+    @Param({"LEFT", "RIGHT", "UP", "DOWN"})
+    public Direction direction;
+  }
+}
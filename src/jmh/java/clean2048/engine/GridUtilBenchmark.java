@@ -0,0 +1,28 @@
+package clean2048.engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridUtilBenchmark {
+
+  @Benchmark
+  public Tile[][] transpose(BenchmarkBoard board) {
+    return GridUtil.transpose(board.grid);
+  }
+
+  @Benchmark
+  public Tile[] getColumn(BenchmarkBoard board) {
+    return GridUtil.getColumn(board.dimension / 2, board.grid);
+  }
+}
@@ -0,0 +1,134 @@
+package clean2048.user_data;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+Compares the streaming reader and writer of UserScoreStorage with Gson building the whole
+map from the file and the whole document as a String, which is how the scores file used to be
+read and written.
+
+Every iteration reads or writes the file once, and the heap counter reports how far the heap
+grew above what was in use before it. It adds up the peaks of the heap's memory pools, which
+may have been reached at different moments, so it is an upper bound that is only meant to be
+compared between the benchmarks.
+*/
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class UserScoreStorageBenchmark {
+  @Param({"10000", "100000", "1000000"})
+  public int users;
+
+  private Path directory;
+  private Path file;
+  private UserScoreStorage storage;
+  private Map<String, User> leaderboard;
+
+  @Setup(Level.Trial)
+  public void writeLeaderboard() throws IOException {
+    SplittableRandom random = new SplittableRandom(2048);
+    leaderboard = new HashMap<>();
+    for (int user = 0; user < users; user++) {
+      String userName = "player" + user;
+      String password = Long.toHexString(random.nextLong());
+      leaderboard.put(userName, new User(userName, password, random.nextInt(1 << 17)));
+    }
+    directory = Files.createTempDirectory("user-scores");
+    file = directory.resolve(UserScoreStorage.USER_SCORE_STORAGE_FILE_NAME);
+    storage = new UserScoreStorage(file);
+    storage.writeUserData(leaderboard);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteLeaderboard() throws IOException {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public Map<String, User> readStreaming(HeapCounter heap) throws IOException {
+    return storage.readUserData();
+  }
+
+  @Benchmark
+  public Map<String, User> readGsonMap(HeapCounter heap) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return new Gson().fromJson(reader, new TypeToken<Map<String, User>>() {}.getType());
+    }
+  }
+
+  @Benchmark
+  public void writeStreaming(HeapCounter heap) throws IOException {
+    storage.writeUserData(leaderboard);
+  }
+
+  @Benchmark
+  public void writeGsonString(HeapCounter heap) throws IOException {
+    Files.writeString(file, new Gson().toJson(leaderboard));
+  }
+
+  /* Reported next to the timings. The garbage left by the previous iteration is collected
+   * first, so it doesn't count towards the growth of the heap.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class HeapCounter {
+    public long peakHeapGrowthBytes;
+
+    private final List<MemoryPoolMXBean> heapPools =
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    private long usedBefore;
+
+    @Setup(Level.Iteration)
+    public void resetPeaks() {
+      System.gc();
+      usedBefore = 0;
+      for (MemoryPoolMXBean pool : heapPools) {
+        pool.resetPeakUsage();
+        usedBefore += pool.getUsage().getUsed();
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void readPeaks() {
+      long peak = 0;
+      for (MemoryPoolMXBean pool : heapPools) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+      peakHeapGrowthBytes = peak - usedBefore;
+    }
+  }
+}
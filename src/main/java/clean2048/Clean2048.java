@@ -1,43 +1,88 @@
 package clean2048;
 
+import clean2048.ai.ExpectimaxSolver;
+import clean2048.ai.MoveHintService;
+import clean2048.ai.PersistentEvaluationCache;
 import clean2048.controller.Direction;
+import clean2048.controller.HintListener;
 import clean2048.controller.InterruptGameException;
 import clean2048.controller.TerminalGameController;
+import clean2048.engine.BitboardGameEngine;
+import clean2048.engine.Engine;
 import clean2048.engine.GameEngine;
+import clean2048.engine.MoveDelta;
+import clean2048.engine.MoveListener;
 import clean2048.lib.lanterna.LanternaTerminal;
-import clean2048.user_data.UserScoreStorage;
+import clean2048.simulation.BatchSimulator;
+import clean2048.user_data.LeaderboardRepository;
+import clean2048.user_data.LogStructuredScoreStore;
 import clean2048.view.EndGameAction;
 import clean2048.view.LeaderboardView;
 import clean2048.view.TerminalGameView;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.SplittableRandom;
 import lombok.Builder;
 
 @Builder(setterPrefix = "with")
 public class Clean2048 {
   private static final int BOARD_DIMENSION = 4;
-  private final GameEngine engine;
+  private static final String SIMULATE_COMMAND = "simulate";
+  private static final String ANIMATE_OPTION = "--animate";
+  private static final Duration HINT_TIME_BUDGET = Duration.ofMillis(300);
+  private final Engine engine;
   private final TerminalGameView view;
   private final TerminalGameController controller;
-  private final UserScoreStorage userScoreStorage;
+  private final LeaderboardRepository leaderboardRepository;
   private final LeaderboardView leaderboardView;
+  // Only set in animated mode.
+  private final RecordLastMove recordedMoves;
 
   public static void main(String[] args) throws IOException {
+    if (args.length > 0 && args[0].equals(SIMULATE_COMMAND)) {
+      // Headless mode, it must not open the terminal UI.
+      BatchSimulator.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+
     LanternaTerminal terminal = new LanternaTerminal();
-    int boardDimension = getBoardDimensionFromCommandLine(args);
-    GameEngine engine = new GameEngine(boardDimension);
+    boolean isAnimated = Arrays.asList(args).contains(ANIMATE_OPTION);
+    int boardDimension =
+        getBoardDimensionFromCommandLine(
+            Arrays.stream(args).filter(arg -> !arg.equals(ANIMATE_OPTION)).toArray(String[]::new));
+    Engine engine;
+    RecordLastMove recordedMoves = null;
+    if (isAnimated) {
+      // Animations are driven by the move deltas, which only GameEngine reports.
+      GameEngine gameEngine = new GameEngine(boardDimension, new SplittableRandom());
+      recordedMoves = new RecordLastMove();
+      gameEngine.addMoveListener(recordedMoves);
+      engine = gameEngine;
+    } else {
+      engine = Engine.forDimension(boardDimension, new SplittableRandom());
+    }
     LeaderboardView leaderboardView = new LeaderboardView(terminal);
-    TerminalGameView view = new TerminalGameView(terminal, leaderboardView, boardDimension);
+    LogStructuredScoreStore scoreStore = LogStructuredScoreStore.openDefault();
+    LeaderboardRepository leaderboardRepository = new LeaderboardRepository(scoreStore);
+    TerminalGameView view =
+        new TerminalGameView(terminal, leaderboardView, leaderboardRepository, boardDimension);
     TerminalGameController controller = new TerminalGameController(terminal);
-    UserScoreStorage userScoreStorage = new UserScoreStorage();
+    controller.setViewportListener(view);
+    // The solver only understands the packed boards of the 4x4 engine.
+    if (engine instanceof BitboardGameEngine bitboardEngine) {
+      controller.setHintListener(new ShowHint(bitboardEngine, view, createHintService()));
+    }
 
     Clean2048 game =
         Clean2048.builder()
             .withEngine(engine)
             .withView(view)
             .withController(controller)
-            .withUserScoreStorage(userScoreStorage)
-                .withLeaderboardView(leaderboardView)
+            .withLeaderboardRepository(leaderboardRepository)
+            .withLeaderboardView(leaderboardView)
+            .withRecordedMoves(recordedMoves)
             .build();
 
     try {
@@ -45,6 +90,9 @@ public class Clean2048 {
     } catch (InterruptGameException e) {
       view.printGameOverMessage();
       game.endGameMenu();
+    } finally {
+      // Waits for a compaction of the scores which is still running.
+      scoreStore.close();
     }
   }
 
@@ -60,10 +108,20 @@ public class Clean2048 {
   private void updateAndShowLeaderboard() throws IOException {
     String userName = view.promptForUsername();
     String password = view.promptForPassword();
-    if (userScoreStorage.verifyUser(userName, password)) {
-      userScoreStorage.updateLeaderboard(userName, password, engine.getScore());
+    if (leaderboardRepository.verifyUser(userName, password)) {
+      leaderboardRepository.updateLeaderboard(userName, password, engine.getScore());
+    }
+    leaderboardView.printLeaderboard(leaderboardRepository.getRanking(), userName);
+  }
+
+  private static MoveHintService createHintService() {
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    try {
+      solver.setPersistentCache(PersistentEvaluationCache.openDefault());
+    } catch (IOException e) {
+      // Hints still work without the cache, they just can't reuse the results of earlier games.
     }
-    leaderboardView.printLeaderboard(userScoreStorage.readUserData());
+    return new MoveHintService(solver, HINT_TIME_BUDGET);
   }
 
   private static int getBoardDimensionFromCommandLine(String[] args) {
@@ -74,27 +132,113 @@ public class Clean2048 {
     }
   }
 
+  /* Keys are read on the controller's input thread and the screen is drawn on the view's
+   * render thread, so this loop only applies moves. Moves typed while the previous one was
+   * being applied are applied back to back, and only the state after the last one is drawn.
+   *
+   * The view reads the board on the render thread, so the board is only changed while holding
+   * the engine's monitor, and each state is handed over before it is let go. Waiting for a key
+   * happens outside of it, which leaves the render thread free to copy the board meanwhile.
+   */
   private void run() throws InterruptGameException, IOException {
-    start();
-    while (!engine.isGameOver()) {
+    synchronized (engine) {
+      start();
       updateDisplay();
-      Optional<Direction> move = controller.getMove();
-      move.ifPresent(engine::takeTurn);
+    }
+    controller.startReadingInput();
+    try {
+      while (!engine.isGameOver()) {
+        Direction move = controller.takeMove();
+        synchronized (engine) {
+          engine.takeTurn(move);
+          applyQueuedMoves();
+          updateDisplay();
+        }
+      }
+    } finally {
+      controller.stopReadingInput();
     }
     end();
   }
 
+  private void applyQueuedMoves() throws InterruptGameException {
+    while (!engine.isGameOver()) {
+      Optional<Direction> move = controller.pollMove();
+      if (move.isEmpty()) {
+        return;
+      }
+      engine.takeTurn(move.get());
+    }
+  }
+
   private void start() {
     engine.startGame();
   }
 
   private void updateDisplay() {
-    view.updateDisplay(engine.getScore(), engine.getSimplifiedGrid());
+    Optional<MoveDelta> move =
+        (recordedMoves == null) ? Optional.empty() : recordedMoves.takeSingleMove();
+    if (move.isPresent()) {
+      view.animateMove(move.get(), engine);
+    } else {
+      view.updateDisplay(engine);
+    }
   }
 
   private void end() throws IOException {
-    updateDisplay();
     view.printGameOverMessage();
     updateAndShowLeaderboard();
   }
+
+  /* Remembers the last move for animated mode. After several moves applied back to back
+   * only the final state gets drawn, so there is no single move to animate.
+   */
+  private static class RecordLastMove implements MoveListener {
+    private MoveDelta lastMove;
+    private int movesSinceTaken;
+
+    @Override
+    public void onMove(MoveDelta delta) {
+      if (delta.getDirection().isEmpty()) {
+        // The tile spawned when the game starts.
+        return;
+      }
+      movesSinceTaken++;
+      lastMove = (movesSinceTaken == 1) ? delta.copy() : null;
+    }
+
+    Optional<MoveDelta> takeSingleMove() {
+      Optional<MoveDelta> move = Optional.ofNullable(lastMove);
+      lastMove = null;
+      movesSinceTaken = 0;
+      return move;
+    }
+  }
+
+  /* Any key press cancels the hint being computed and hides the one being shown,
+   * since it would no longer match the board once the move has been made.
+   * Hints are requested from the game loop, which is the only thread touching the engine.
+   */
+  private static class ShowHint implements HintListener {
+    private final BitboardGameEngine engine;
+    private final TerminalGameView view;
+    private final MoveHintService hintService;
+
+    ShowHint(BitboardGameEngine engine, TerminalGameView view, MoveHintService hintService) {
+      this.engine = engine;
+      this.view = view;
+      this.hintService = hintService;
+    }
+
+    @Override
+    public void onHintRequested() {
+      hintService.requestHint(engine.getBoard(), view::showHint);
+    }
+
+    @Override
+    public void onHintInvalidated() {
+      hintService.cancel();
+      view.clearHint();
+    }
+  }
 }
@@ -0,0 +1,121 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import clean2048.engine.BitboardGameEngine;
+
+/*
+The 8 rotations and reflections of a 4x4 board in the packed format of BitboardGameEngine.
+
+Every symmetry is written as an optional transposition followed by optional horizontal and
+vertical flips, and is identified by the three bits saying which of those are applied.
+The game rules don't care about the orientation of the board, so all 8 images of a position
+have the same value, and a move on one of them corresponds to the mirrored move on the others.
+*/
+final class BoardSymmetry {
+  static final int COUNT = 8;
+  private static final int TRANSPOSE = 1;
+  private static final int FLIP_HORIZONTALLY = 2;
+  private static final int FLIP_VERTICALLY = 4;
+
+  private BoardSymmetry() {}
+
+  static long apply(long board, int symmetry) {
+    if ((symmetry & TRANSPOSE) != 0) {
+      board = BitboardGameEngine.transpose(board);
+    }
+    if ((symmetry & FLIP_HORIZONTALLY) != 0) {
+      board = flipHorizontally(board);
+    }
+    if ((symmetry & FLIP_VERTICALLY) != 0) {
+      board = flipVertically(board);
+    }
+    return board;
+  }
+
+  /* Returns the symmetry which maps the board to its smallest image. All images of
+   * a position share this smallest image, so it can stand in for all of them.
+   */
+  static int findCanonicalSymmetry(long board) {
+    int canonicalSymmetry = 0;
+    long canonicalBoard = board;
+    for (int symmetry = 1; symmetry < COUNT; symmetry++) {
+      long image = apply(board, symmetry);
+      if (Long.compareUnsigned(image, canonicalBoard) < 0) {
+        canonicalBoard = image;
+        canonicalSymmetry = symmetry;
+      }
+    }
+    return canonicalSymmetry;
+  }
+
+  /* Maps a move on the original board to the same move on its image. */
+  static Direction apply(Direction direction, int symmetry) {
+    if ((symmetry & TRANSPOSE) != 0) {
+      direction = transpose(direction);
+    }
+    if ((symmetry & FLIP_HORIZONTALLY) != 0) {
+      direction = flipHorizontally(direction);
+    }
+    if ((symmetry & FLIP_VERTICALLY) != 0) {
+      direction = flipVertically(direction);
+    }
+    return direction;
+  }
+
+  /* Maps a move on the image back to the original board. Each step is its own inverse,
+   * so it is enough to undo them in reverse order.
+   */
+  static Direction invert(Direction direction, int symmetry) {
+    if ((symmetry & FLIP_VERTICALLY) != 0) {
+      direction = flipVertically(direction);
+    }
+    if ((symmetry & FLIP_HORIZONTALLY) != 0) {
+      direction = flipHorizontally(direction);
+    }
+    if ((symmetry & TRANSPOSE) != 0) {
+      direction = transpose(direction);
+    }
+    return direction;
+  }
+
+  /* Reverses the order of the cells in every row. */
+  private static long flipHorizontally(long board) {
+    return ((board & 0x000F000F000F000FL) << 12)
+        | ((board & 0x00F000F000F000F0L) << 4)
+        | ((board >>> 4) & 0x00F000F000F000F0L)
+        | ((board >>> 12) & 0x000F000F000F000FL);
+  }
+
+  /* Reverses the order of the rows. */
+  private static long flipVertically(long board) {
+    return (board << 48)
+        | ((board << 16) & 0x0000FFFF00000000L)
+        | ((board >>> 16) & 0x00000000FFFF0000L)
+        | (board >>> 48);
+  }
+
+  private static Direction transpose(Direction direction) {
+    return switch (direction) {
+      case LEFT -> Direction.UP;
+      case UP -> Direction.LEFT;
+      case RIGHT -> Direction.DOWN;
+      case DOWN -> Direction.RIGHT;
+    };
+  }
+
+  private static Direction flipHorizontally(Direction direction) {
+    return switch (direction) {
+      case LEFT -> Direction.RIGHT;
+      case RIGHT -> Direction.LEFT;
+      default -> direction;
+    };
+  }
+
+  private static Direction flipVertically(Direction direction) {
+    return switch (direction) {
+      case UP -> Direction.DOWN;
+      case DOWN -> Direction.UP;
+      default -> direction;
+    };
+  }
+}
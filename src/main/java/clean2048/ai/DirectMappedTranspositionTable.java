@@ -0,0 +1,56 @@
+package clean2048.ai;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/*
+A fixed-size, direct-mapped table for a single search thread: each board hashes to a single
+slot and a new entry always replaces the old one.
+Every slot takes 20 bytes, so a table with 2^sizeLog2 slots needs 20 * 2^sizeLog2 bytes.
+*/
+public class DirectMappedTranspositionTable implements TranspositionTable {
+  static final long FIBONACCI_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+  private final int sizeLog2;
+  private final long[] boards;
+  private final double[] values;
+  private final int[] depths;
+  @Getter private long lookups;
+  @Getter private long hits;
+
+  public DirectMappedTranspositionTable(int sizeLog2) {
+    this.sizeLog2 = sizeLog2;
+    this.boards = new long[1 << sizeLog2];
+    this.values = new double[1 << sizeLog2];
+    this.depths = new int[1 << sizeLog2];
+  }
+
+  public double get(long board, int depth) {
+    lookups++;
+    int slot = getSlot(board);
+    if (depths[slot] == depth && boards[slot] == board) {
+      hits++;
+      return values[slot];
+    }
+    return Double.NaN;
+  }
+
+  public void put(long board, int depth, double value) {
+    int slot = getSlot(board);
+    boards[slot] = board;
+    values[slot] = value;
+    depths[slot] = depth;
+  }
+
+  public void clear() {
+    Arrays.fill(depths, 0);
+  }
+
+  public void resetStatistics() {
+    lookups = 0;
+    hits = 0;
+  }
+
+  private int getSlot(long board) {
+    return (int) ((board * FIBONACCI_HASH_MULTIPLIER) >>> (Long.SIZE - sizeLog2));
+  }
+}
@@ -0,0 +1,213 @@
+package clean2048.ai;
+
+import clean2048.ai.PersistentEvaluationCache.CachedEvaluation;
+import clean2048.controller.Direction;
+import clean2048.engine.BitboardGameEngine;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.Getter;
+
+/*
+Suggests moves for the 4x4 game by searching the tree of future positions.
+
+The tree alternates between two kinds of nodes:
+- max nodes, where the player picks the move with the highest expected value,
+- chance nodes, where a tile spawns on one of the empty cells with equal probability,
+  and is a 2 or a 4 with equal probability (see Tile.generateRandomTile).
+The value of a chance node is the average value of its children, and once the depth limit
+is reached the board is scored by the heuristic. Positions are represented in the packed
+format of BitboardGameEngine, so applying a move is only a few table lookups.
+
+bestMove uses iterative deepening: it searches one move ahead, then two moves ahead and so on
+until the time budget runs out, and returns the move found by the deepest completed search.
+With a persistent cache set, a position searched by an earlier run starts from the depth
+that run reached, and results deeper than the cached ones are written back.
+*/
+public class ExpectimaxSolver {
+  public static final int DEFAULT_TABLE_SIZE_LOG2 = 20;
+  private static final int MAX_DEPTH = 12;
+  static final int CELL_COUNT = BitboardGameEngine.DIMENSION * BitboardGameEngine.DIMENSION;
+  static final int[] SPAWNED_EXPONENTS = {1, 2};
+  static final double SPAWN_PROBABILITY = 1.0 / SPAWNED_EXPONENTS.length;
+  static final double LOST_POSITION_VALUE = 0;
+  static final Direction[] DIRECTIONS = Direction.values();
+
+  // Reading the clock is relatively expensive, so we only check the deadline every so often.
+  private static final int NODES_BETWEEN_DEADLINE_CHECKS = 1 << 10;
+
+  final Heuristic heuristic;
+  final TranspositionTable table;
+  private long nodes;
+  long deadline = Long.MAX_VALUE;
+  @Getter private SearchStatistics lastSearchStatistics;
+  private PersistentEvaluationCache persistentCache;
+
+  public ExpectimaxSolver() {
+    this(new WeightedHeuristic(), new DirectMappedTranspositionTable(DEFAULT_TABLE_SIZE_LOG2));
+  }
+
+  public ExpectimaxSolver(Heuristic heuristic, TranspositionTable table) {
+    this.heuristic = heuristic;
+    this.table = table;
+  }
+
+  /* Used to search a part of the tree on behalf of ParallelExpectimaxSolver. */
+  ExpectimaxSolver(Heuristic heuristic, TranspositionTable table, long deadline) {
+    this(heuristic, table);
+    this.deadline = deadline;
+  }
+
+  public void setPersistentCache(PersistentEvaluationCache persistentCache) {
+    this.persistentCache = persistentCache;
+  }
+
+  /* Returns the best move found within the time budget, or nothing if the game is over.
+   * Unless the persistent cache already knows a move, the search one move ahead
+   * is always completed, even if it exceeds the budget.
+   * Interrupting the thread stops the search as if the time budget had run out.
+   */
+  public Optional<Direction> bestMove(long board, Duration timeBudget) {
+    long start = System.nanoTime();
+    resetNodeCount();
+    table.resetStatistics();
+
+    Optional<Direction> bestMove = Optional.empty();
+    double bestValue = Double.NaN;
+    int completedDepth = 0;
+    Optional<CachedEvaluation> cached =
+        (persistentCache == null) ? Optional.empty() : persistentCache.get(board, 1);
+    if (cached.isPresent()) {
+      bestMove = Optional.of(cached.get().move());
+      completedDepth = cached.get().depth();
+    }
+    int cachedDepth = completedDepth;
+
+    try {
+      for (int depth = completedDepth + 1; depth <= MAX_DEPTH; depth++) {
+        deadline = (completedDepth == 0) ? Long.MAX_VALUE : start + timeBudget.toNanos();
+        double[] moveValues = evaluateMoves(board, depth);
+        bestMove = selectBestMove(moveValues);
+        completedDepth = depth;
+        if (bestMove.isEmpty()) {
+          break;
+        }
+        bestValue = moveValues[bestMove.get().ordinal()];
+      }
+    } catch (SearchTimeout e) {
+      // The result of the last completed search is our best guess.
+    }
+
+    if (persistentCache != null && bestMove.isPresent() && completedDepth > cachedDepth) {
+      persistentCache.put(board, bestMove.get(), bestValue, completedDepth);
+    }
+
+    lastSearchStatistics =
+        new SearchStatistics(
+            completedDepth,
+            getNodeCount(),
+            System.nanoTime() - start,
+            table.getLookups(),
+            table.getHits());
+    return bestMove;
+  }
+
+  /* Searches exactly the given number of moves ahead. */
+  public Optional<Direction> bestMove(long board, int depth) {
+    return selectBestMove(evaluateMoves(board, depth));
+  }
+
+  /* Ties go to the direction that comes first, so that every solver picks the same move. */
+  static Optional<Direction> selectBestMove(double[] moveValues) {
+    Direction bestMove = null;
+    for (Direction direction : DIRECTIONS) {
+      double value = moveValues[direction.ordinal()];
+      if (!Double.isNaN(value) && (bestMove == null || value > moveValues[bestMove.ordinal()])) {
+        bestMove = direction;
+      }
+    }
+    return Optional.ofNullable(bestMove);
+  }
+
+  /* Returns the expected value of each move indexed by the ordinal of its direction,
+   * or NaN for moves that don't change the board.
+   */
+  public double[] evaluateMoves(long board, int depth) {
+    double[] moveValues = new double[DIRECTIONS.length];
+    for (Direction direction : DIRECTIONS) {
+      long moved = BitboardGameEngine.move(board, direction);
+      moveValues[direction.ordinal()] =
+          (moved == board) ? Double.NaN : chanceNode(moved, depth - 1);
+    }
+    return moveValues;
+  }
+
+  private double maxNode(long board, int depth) {
+    countNode();
+    double bestValue = LOST_POSITION_VALUE;
+    for (Direction direction : DIRECTIONS) {
+      long moved = BitboardGameEngine.move(board, direction);
+      if (moved != board) {
+        bestValue = Math.max(bestValue, chanceNode(moved, depth - 1));
+      }
+    }
+    return bestValue;
+  }
+
+  /* A board that has just been changed by a move always has at least one empty cell,
+   * either because the board wasn't full before the move, or because tiles were merged.
+   */
+  double chanceNode(long board, int depth) {
+    countNode();
+    if (depth == 0) {
+      return heuristic.evaluate(board);
+    }
+    double cachedValue = table.get(board, depth);
+    if (!Double.isNaN(cachedValue)) {
+      return cachedValue;
+    }
+
+    double totalValue = 0;
+    int emptyCells = 0;
+    for (int cell = 0; cell < CELL_COUNT; cell++) {
+      if (BitboardGameEngine.getExponent(board, cell) != 0) {
+        continue;
+      }
+      emptyCells++;
+      for (int exponent : SPAWNED_EXPONENTS) {
+        long spawned = BitboardGameEngine.setExponent(board, cell, exponent);
+        totalValue += SPAWN_PROBABILITY * maxNode(spawned, depth);
+      }
+    }
+    double value = totalValue / emptyCells;
+    table.put(board, depth, value);
+    return value;
+  }
+
+  long getNodeCount() {
+    return nodes;
+  }
+
+  void resetNodeCount() {
+    nodes = 0;
+  }
+
+  private void countNode() {
+    nodes++;
+    if (nodes % NODES_BETWEEN_DEADLINE_CHECKS == 0
+        && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+      throw SearchTimeout.INSTANCE;
+    }
+  }
+
+  /* Unwinds the search once the deadline has passed or the thread has been interrupted.
+   * It is thrown on a hot path, so we reuse a single instance and skip filling in
+   * the stack trace.
+   */
+  private static class SearchTimeout extends RuntimeException {
+    private static final SearchTimeout INSTANCE = new SearchTimeout();
+
+    private SearchTimeout() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package clean2048.ai;
+
+/*
+Estimates how good a board (in the packed format of BitboardGameEngine) is for the player.
+The solver only compares these values with each other and averages them, so the scale
+doesn't matter as long as better positions get higher values. Lost positions are worth 0,
+so positions where the game goes on should be scored above that.
+*/
+@FunctionalInterface
+public interface Heuristic {
+  double evaluate(long board);
+}
@@ -0,0 +1,71 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/*
+Computes move hints on a background thread, so that the game keeps reacting to input
+and redrawing the screen while the solver is searching.
+
+Only one hint is computed at a time: requesting a new hint or calling cancel interrupts the
+search in progress, which makes the solver stop within a few microseconds. Every request
+gets a new generation number, and a result is only handed over if no other request or
+cancellation has happened since. Both checks happen under the same lock, so a hint for
+a board the player has already moved away from is never delivered.
+*/
+public class MoveHintService implements AutoCloseable {
+  private final ExpectimaxSolver solver;
+  private final Duration timeBudget;
+  private final ExecutorService executor;
+  private Future<?> pendingHint;
+  private long generation;
+
+  public MoveHintService(ExpectimaxSolver solver, Duration timeBudget) {
+    this.solver = solver;
+    this.timeBudget = timeBudget;
+    this.executor =
+        Executors.newSingleThreadExecutor(
+            task -> {
+              Thread thread = new Thread(task, "move-hint");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /* The hint is passed to onHint on the background thread. Nothing is passed
+   * if the game is over or the request gets cancelled.
+   */
+  public synchronized void requestHint(long board, Consumer<Direction> onHint) {
+    cancel();
+    long requestGeneration = generation;
+    pendingHint =
+        executor.submit(
+            () -> deliver(requestGeneration, solver.bestMove(board, timeBudget), onHint));
+  }
+
+  public synchronized void cancel() {
+    generation++;
+    if (pendingHint != null) {
+      pendingHint.cancel(true);
+      pendingHint = null;
+    }
+  }
+
+  private synchronized void deliver(
+      long requestGeneration, Optional<Direction> hint, Consumer<Direction> onHint) {
+    if (requestGeneration == generation) {
+      hint.ifPresent(onHint);
+    }
+  }
+
+  @Override
+  public void close() {
+    cancel();
+    executor.shutdownNow();
+  }
+}
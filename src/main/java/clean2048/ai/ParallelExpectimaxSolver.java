@@ -0,0 +1,171 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import clean2048.engine.BitboardGameEngine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+The same search as ExpectimaxSolver, spread over the workers of a ForkJoinPool.
+
+The root moves and the upper layers of chance nodes are split into fork/join tasks, one per
+child node, so idle workers can steal subtrees from busy ones. Once a task is deep enough
+in the tree, the rest of its subtree is searched sequentially by a plain ExpectimaxSolver,
+since by then there are plenty of tasks to keep all workers busy and forking further would
+only add overhead. All tasks share one SharedTranspositionTable.
+
+Children are combined in the same order and with the same arithmetic as in the sequential
+search, and the table only ever returns exact values, so at a given depth both solvers
+evaluate every move to exactly the same value and pick the same move.
+*/
+public class ParallelExpectimaxSolver extends ExpectimaxSolver {
+  public static final int DEFAULT_SPLIT_LAYERS = 2;
+  private final ForkJoinPool pool;
+  private final int splitLayers;
+  private final LongAdder nodes = new LongAdder();
+
+  public ParallelExpectimaxSolver(ForkJoinPool pool) {
+    this(
+        new WeightedHeuristic(),
+        new SharedTranspositionTable(DEFAULT_TABLE_SIZE_LOG2),
+        pool,
+        DEFAULT_SPLIT_LAYERS);
+  }
+
+  /* Chance nodes up to splitLayers moves away from the root are split into parallel tasks. */
+  public ParallelExpectimaxSolver(
+      Heuristic heuristic, SharedTranspositionTable table, ForkJoinPool pool, int splitLayers) {
+    super(heuristic, table);
+    this.pool = pool;
+    this.splitLayers = splitLayers;
+  }
+
+  @Override
+  public double[] evaluateMoves(long board, int depth) {
+    return pool.invoke(new RootTask(board, depth));
+  }
+
+  @Override
+  long getNodeCount() {
+    return nodes.sum();
+  }
+
+  @Override
+  void resetNodeCount() {
+    nodes.reset();
+  }
+
+  private double searchSequentially(long board, int depth) {
+    ExpectimaxSolver solver = new ExpectimaxSolver(heuristic, table, deadline);
+    try {
+      return solver.chanceNode(board, depth);
+    } finally {
+      nodes.add(solver.getNodeCount());
+    }
+  }
+
+  private class RootTask extends RecursiveTask<double[]> {
+    private final long board;
+    private final int depth;
+
+    RootTask(long board, int depth) {
+      this.board = board;
+      this.depth = depth;
+    }
+
+    @Override
+    protected double[] compute() {
+      double[] moveValues = new double[DIRECTIONS.length];
+      List<ChanceNodeTask> tasks = new ArrayList<>(DIRECTIONS.length);
+      for (Direction direction : DIRECTIONS) {
+        long moved = BitboardGameEngine.move(board, direction);
+        moveValues[direction.ordinal()] = Double.NaN;
+        if (moved != board) {
+          tasks.add(new ChanceNodeTask(moved, depth - 1, 1, direction));
+        }
+      }
+      for (ChanceNodeTask task : ForkJoinTask.invokeAll(tasks)) {
+        moveValues[task.direction.ordinal()] = task.join();
+      }
+      return moveValues;
+    }
+  }
+
+  private class MaxNodeTask extends RecursiveTask<Double> {
+    private final long board;
+    private final int depth;
+    private final int layer;
+
+    MaxNodeTask(long board, int depth, int layer) {
+      this.board = board;
+      this.depth = depth;
+      this.layer = layer;
+    }
+
+    @Override
+    protected Double compute() {
+      nodes.increment();
+      List<ChanceNodeTask> tasks = new ArrayList<>(DIRECTIONS.length);
+      for (Direction direction : DIRECTIONS) {
+        long moved = BitboardGameEngine.move(board, direction);
+        if (moved != board) {
+          tasks.add(new ChanceNodeTask(moved, depth - 1, layer + 1, direction));
+        }
+      }
+      double bestValue = LOST_POSITION_VALUE;
+      for (ChanceNodeTask task : ForkJoinTask.invokeAll(tasks)) {
+        bestValue = Math.max(bestValue, task.join());
+      }
+      return bestValue;
+    }
+  }
+
+  /* Layer is the number of moves between the root and this node. */
+  private class ChanceNodeTask extends RecursiveTask<Double> {
+    private final long board;
+    private final int depth;
+    private final int layer;
+    private final Direction direction;
+
+    ChanceNodeTask(long board, int depth, int layer, Direction direction) {
+      this.board = board;
+      this.depth = depth;
+      this.layer = layer;
+      this.direction = direction;
+    }
+
+    @Override
+    protected Double compute() {
+      if (depth == 0 || layer > splitLayers) {
+        return searchSequentially(board, depth);
+      }
+      nodes.increment();
+      double cachedValue = table.get(board, depth);
+      if (!Double.isNaN(cachedValue)) {
+        return cachedValue;
+      }
+
+      List<MaxNodeTask> tasks = new ArrayList<>();
+      for (int cell = 0; cell < CELL_COUNT; cell++) {
+        if (BitboardGameEngine.getExponent(board, cell) != 0) {
+          continue;
+        }
+        for (int exponent : SPAWNED_EXPONENTS) {
+          long spawned = BitboardGameEngine.setExponent(board, cell, exponent);
+          tasks.add(new MaxNodeTask(spawned, depth, layer));
+        }
+      }
+      double totalValue = 0;
+      for (MaxNodeTask task : ForkJoinTask.invokeAll(tasks)) {
+        totalValue += SPAWN_PROBABILITY * task.join();
+      }
+      double value = totalValue / (tasks.size() / SPAWNED_EXPONENTS.length);
+      table.put(board, depth, value);
+      return value;
+    }
+  }
+}
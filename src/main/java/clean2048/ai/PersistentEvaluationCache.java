@@ -0,0 +1,195 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import clean2048.user_data.UserScoreStorage;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/*
+Remembers the results of searches across runs of the game, so that positions which come up
+over and over (most of the early game) don't need to be searched from scratch every time.
+
+The cache is a hash table stored in a memory-mapped file in the game data directory.
+Positions are keyed by their canonical image (see BoardSymmetry), so all 8 rotations and
+reflections of a position share a single entry, and the stored move is mapped back to the
+orientation of the board it is looked up for.
+
+A position may be stored in any of the PROBE_LIMIT slots following the one it hashes to.
+When all of them are taken, the entry searched to the smallest depth is evicted,
+since it is the cheapest one to compute again.
+
+Each slot has the same layout as in SharedTranspositionTable: a check word, the bits of the
+value and a word holding the depth and the move, where the check word is the XOR of the
+board with the other two. Several game processes can map the file at the same time. A slot
+that one of them is in the middle of writing fails the check and is read as empty,
+so readers never see an entry that mixes up two positions.
+
+The file at the cache's path is never resized or cleared, since that would crash the other
+processes which have it mapped as soon as they touch a page past its new end. A new or
+replaced file is filled in under a temporary name and then renamed into place, while
+processes still using the old file keep their mapping of it.
+*/
+public class PersistentEvaluationCache {
+  public static final String CACHE_FILE_NAME = "solver-cache";
+  public static final int DEFAULT_SIZE_LOG2 = 18;
+  private static final long MAGIC = 0x32303438_43414348L;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int SLOT_BYTES = 3 * Long.BYTES;
+  private static final int PROBE_LIMIT = 8;
+  private static final int MOVE_BITS = 8;
+  private static final long MOVE_MASK = (1 << MOVE_BITS) - 1;
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  private final int sizeLog2;
+  private final int probeLimit;
+  private final MappedByteBuffer buffer;
+
+  public record CachedEvaluation(Direction move, double value, int depth) {}
+
+  /* Opens the cache file, or replaces it if it doesn't exist yet or has a different format. */
+  public PersistentEvaluationCache(Path file, int sizeLog2) throws IOException {
+    this.sizeLog2 = sizeLog2;
+    this.probeLimit = Math.min(PROBE_LIMIT, 1 << sizeLog2);
+    long fileSize = HEADER_BYTES + ((long) SLOT_BYTES << sizeLog2);
+    Optional<MappedByteBuffer> existing = mapExisting(file, fileSize);
+    buffer = existing.isPresent() ? existing.get() : createFile(file, fileSize);
+  }
+
+  /* Opens the cache in the game data directory, next to the leaderboard. */
+  public static PersistentEvaluationCache openDefault() throws IOException {
+    Path gameDataHome = UserScoreStorage.getGameDataHome();
+    Files.createDirectories(gameDataHome);
+    return new PersistentEvaluationCache(
+        gameDataHome.resolve(CACHE_FILE_NAME), DEFAULT_SIZE_LOG2);
+  }
+
+  /* Returns the stored result for the board if it was searched to at least the given depth. */
+  public Optional<CachedEvaluation> get(long board, int minDepth) {
+    int symmetry = BoardSymmetry.findCanonicalSymmetry(board);
+    long key = BoardSymmetry.apply(board, symmetry);
+    int home = getHomeSlot(key);
+    for (int i = 0; i < probeLimit; i++) {
+      int offset = getOffset(home + i);
+      long check = buffer.getLong(offset);
+      long valueBits = buffer.getLong(offset + Long.BYTES);
+      long details = buffer.getLong(offset + 2 * Long.BYTES);
+      if (details != 0 && (check ^ valueBits ^ details) == key) {
+        int depth = (int) (details >>> MOVE_BITS);
+        int move = (int) (details & MOVE_MASK);
+        if (depth < minDepth || move >= DIRECTIONS.length) {
+          return Optional.empty();
+        }
+        Direction direction = BoardSymmetry.invert(DIRECTIONS[move], symmetry);
+        return Optional.of(
+            new CachedEvaluation(direction, Double.longBitsToDouble(valueBits), depth));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /* Stores the result of a search, unless the cache already knows the result of
+   * a deeper one. Depth needs to be at least 1.
+   */
+  public void put(long board, Direction move, double value, int depth) {
+    int symmetry = BoardSymmetry.findCanonicalSymmetry(board);
+    long key = BoardSymmetry.apply(board, symmetry);
+    int home = getHomeSlot(key);
+    int target = -1;
+    int targetDepth = Integer.MAX_VALUE;
+    for (int i = 0; i < probeLimit; i++) {
+      int offset = getOffset(home + i);
+      long check = buffer.getLong(offset);
+      long valueBits = buffer.getLong(offset + Long.BYTES);
+      long details = buffer.getLong(offset + 2 * Long.BYTES);
+      int storedDepth = (int) (details >>> MOVE_BITS);
+      if (details != 0 && (check ^ valueBits ^ details) == key) {
+        target = offset;
+        targetDepth = storedDepth;
+        break;
+      }
+      // Empty slots have depth 0, so they are always taken before evicting anything.
+      if (storedDepth < targetDepth) {
+        target = offset;
+        targetDepth = storedDepth;
+      }
+    }
+    if (targetDepth > depth) {
+      return;
+    }
+    long valueBits = Double.doubleToRawLongBits(value);
+    long details = ((long) depth << MOVE_BITS) | BoardSymmetry.apply(move, symmetry).ordinal();
+    buffer.putLong(target + Long.BYTES, valueBits);
+    buffer.putLong(target + 2 * Long.BYTES, details);
+    buffer.putLong(target, key ^ valueBits ^ details);
+  }
+
+  private Optional<MappedByteBuffer> mapExisting(Path file, long fileSize) throws IOException {
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (channel.size() != fileSize) {
+        return Optional.empty();
+      }
+      // The mapping stays valid after the channel is closed.
+      MappedByteBuffer existing = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+      return hasValidHeader(existing) ? Optional.of(existing) : Optional.empty();
+    }
+  }
+
+  /* Fills in an empty cache under a temporary name in the same directory, so that renaming it
+   * over the old file is atomic.
+   */
+  private MappedByteBuffer createFile(Path file, long fileSize) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      MappedByteBuffer created;
+      try (FileChannel channel =
+          FileChannel.open(temporaryFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        created = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+      }
+      initialise(created);
+      created.force();
+      Files.move(
+          temporaryFile,
+          file,
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      return created;
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  private boolean hasValidHeader(MappedByteBuffer buffer) {
+    return buffer.getLong(0) == MAGIC
+        && buffer.getInt(Long.BYTES) == FORMAT_VERSION
+        && buffer.getInt(Long.BYTES + Integer.BYTES) == sizeLog2;
+  }
+
+  private void initialise(MappedByteBuffer buffer) {
+    // A new file reads as zeros already, only the header needs to be written.
+    buffer.putLong(0, MAGIC);
+    buffer.putInt(Long.BYTES, FORMAT_VERSION);
+    buffer.putInt(Long.BYTES + Integer.BYTES, sizeLog2);
+  }
+
+  private int getHomeSlot(long key) {
+    long hash = key * DirectMappedTranspositionTable.FIBONACCI_HASH_MULTIPLIER;
+    return (int) (hash >>> (Long.SIZE - sizeLog2));
+  }
+
+  /* Probing wraps around from the last slot to the first one. */
+  private int getOffset(int slot) {
+    return HEADER_BYTES + SLOT_BYTES * (slot & ((1 << sizeLog2) - 1));
+  }
+}
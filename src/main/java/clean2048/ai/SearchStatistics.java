@@ -0,0 +1,26 @@
+package clean2048.ai;
+
+/* Measurements of a single bestMove call, used to tune the time budget and table size. */
+public record SearchStatistics(
+    int completedDepth, long nodes, long elapsedNanos, long cacheLookups, long cacheHits) {
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  public double nodesPerSecond() {
+    return (elapsedNanos == 0) ? 0 : nodes * NANOS_PER_SECOND / elapsedNanos;
+  }
+
+  public double cacheHitRate() {
+    return (cacheLookups == 0) ? 0 : (double) cacheHits / cacheLookups;
+  }
+
+  @Override
+  public String toString() {
+    return "depth %d, %d nodes in %.1f ms (%.0f nodes/s), cache hit rate %.1f%%"
+        .formatted(
+            completedDepth,
+            nodes,
+            elapsedNanos / 1e6,
+            nodesPerSecond(),
+            100 * cacheHitRate());
+  }
+}
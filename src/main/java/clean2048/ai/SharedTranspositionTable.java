@@ -0,0 +1,77 @@
+package clean2048.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+A direct-mapped table that many search threads can read and write at the same time
+without any locking.
+
+Each slot is three consecutive longs: a check word, the bits of the value and the depth.
+The check word is the XOR of the board with the other two, and a lookup only accepts
+an entry if the XOR of the three words it read gives back the board it is looking for.
+Two threads writing the same slot at once may leave it with words from different entries
+(and on 32-bit JVMs even a single long can be torn), but such a mix fails the check with
+overwhelming probability, so it is treated as a miss instead of returning a wrong value.
+This is much cheaper than locking or atomics for every access, and losing an entry
+now and then only costs a little repeated work.
+
+The hit and lookup counters are LongAdders so that threads don't contend on them.
+Every slot takes 24 bytes, so a table with 2^sizeLog2 slots needs 24 * 2^sizeLog2 bytes.
+*/
+public class SharedTranspositionTable implements TranspositionTable {
+  private static final int WORDS_PER_SLOT = 3;
+  private final int sizeLog2;
+  private final long[] slots;
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+
+  public SharedTranspositionTable(int sizeLog2) {
+    this.sizeLog2 = sizeLog2;
+    this.slots = new long[WORDS_PER_SLOT << sizeLog2];
+  }
+
+  public double get(long board, int depth) {
+    lookups.increment();
+    int slot = getSlot(board);
+    long check = slots[slot];
+    long valueBits = slots[slot + 1];
+    long storedDepth = slots[slot + 2];
+    if (storedDepth == depth && (check ^ valueBits ^ storedDepth) == board) {
+      hits.increment();
+      return Double.longBitsToDouble(valueBits);
+    }
+    return Double.NaN;
+  }
+
+  public void put(long board, int depth, double value) {
+    int slot = getSlot(board);
+    long valueBits = Double.doubleToRawLongBits(value);
+    slots[slot + 1] = valueBits;
+    slots[slot + 2] = depth;
+    slots[slot] = board ^ valueBits ^ depth;
+  }
+
+  /* Must not be called while a search is running. */
+  public void clear() {
+    Arrays.fill(slots, 0);
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public void resetStatistics() {
+    lookups.reset();
+    hits.reset();
+  }
+
+  private int getSlot(long board) {
+    long hash = board * DirectMappedTranspositionTable.FIBONACCI_HASH_MULTIPLIER;
+    return WORDS_PER_SLOT * (int) (hash >>> (Long.SIZE - sizeLog2));
+  }
+}
@@ -0,0 +1,26 @@
+package clean2048.ai;
+
+/*
+Caches the values of chance nodes evaluated during a search, so that positions reached
+through different move orders are only searched once.
+
+An entry is only used if it was computed to exactly the requested depth, so a cached value
+is always the same as the one a fresh search would return. This keeps the outcome of a search
+independent of what the table held beforehand, and of the order in which parallel searches
+happened to fill it.
+*/
+public interface TranspositionTable {
+  /* Returns the cached value, or NaN if the board hasn't been searched to that depth. */
+  double get(long board, int depth);
+
+  /* Depth needs to be at least 1, 0 marks an empty slot. */
+  void put(long board, int depth, double value);
+
+  void clear();
+
+  long getLookups();
+
+  long getHits();
+
+  void resetStatistics();
+}
@@ -0,0 +1,106 @@
+package clean2048.ai;
+
+import clean2048.engine.BitboardGameEngine;
+
+/*
+Scores a board as a weighted sum of properties of its rows and columns:
+- the number of empty cells, as they give room to manoeuvre,
+- the number of tiles that can be merged with a neighbour,
+- monotonicity, i.e. how far each line is from being sorted in either direction, since
+  keeping the large tiles lined up along an edge makes them easy to merge later on,
+- the total value of the tiles, so that the solver prefers merging them sooner.
+
+Each term only depends on a single row of four tiles, so the score of every possible row is
+computed once up front, and evaluating a board is eight table lookups (four rows and the four
+rows of the transposed board).
+*/
+public class WeightedHeuristic implements Heuristic {
+  private static final int ROW_COUNT = 1 << 16;
+  private static final int DIMENSION = BitboardGameEngine.DIMENSION;
+  private static final double MONOTONICITY_POWER = 4;
+  private static final double SUM_POWER = 3.5;
+
+  // Keeps the score of realistic rows positive. Lost positions are scored as 0 by the solver,
+  // so any position where the game goes on needs to be worth more than that.
+  private static final double BASE_ROW_SCORE = 200_000;
+
+  private final float[] rowScores = new float[ROW_COUNT];
+
+  public WeightedHeuristic() {
+    this(270, 700, 47, 11);
+  }
+
+  public WeightedHeuristic(
+      double emptyCellWeight, double mergeWeight, double monotonicityWeight, double sumWeight) {
+    for (int row = 0; row < ROW_COUNT; row++) {
+      rowScores[row] =
+          (float) scoreRow(row, emptyCellWeight, mergeWeight, monotonicityWeight, sumWeight);
+    }
+  }
+
+  @Override
+  public double evaluate(long board) {
+    return scoreRows(board) + scoreRows(BitboardGameEngine.transpose(board));
+  }
+
+  private double scoreRows(long board) {
+    double score = 0;
+    for (int row = 0; row < DIMENSION; row++) {
+      score += rowScores[(int) ((board >>> (16 * row)) & 0xFFFF)];
+    }
+    return score;
+  }
+
+  private static double scoreRow(
+      int row,
+      double emptyCellWeight,
+      double mergeWeight,
+      double monotonicityWeight,
+      double sumWeight) {
+    int[] exponents = new int[DIMENSION];
+    for (int i = 0; i < DIMENSION; i++) {
+      exponents[i] = (row >>> (4 * i)) & 0xF;
+    }
+
+    int emptyCells = 0;
+    int merges = 0;
+    double sum = 0;
+    int previous = 0;
+    int run = 0;
+    for (int exponent : exponents) {
+      sum += Math.pow(exponent, SUM_POWER);
+      if (exponent == 0) {
+        emptyCells++;
+        continue;
+      }
+      if (exponent == previous) {
+        run++;
+      } else if (run > 0) {
+        merges += 1 + run;
+        run = 0;
+      }
+      previous = exponent;
+    }
+    if (run > 0) {
+      merges += 1 + run;
+    }
+
+    double decreasingPenalty = 0;
+    double increasingPenalty = 0;
+    for (int i = 1; i < DIMENSION; i++) {
+      double previousTile = Math.pow(exponents[i - 1], MONOTONICITY_POWER);
+      double tile = Math.pow(exponents[i], MONOTONICITY_POWER);
+      if (exponents[i - 1] > exponents[i]) {
+        increasingPenalty += previousTile - tile;
+      } else {
+        decreasingPenalty += tile - previousTile;
+      }
+    }
+
+    return BASE_ROW_SCORE
+        + emptyCellWeight * emptyCells
+        + mergeWeight * merges
+        - monotonicityWeight * Math.min(increasingPenalty, decreasingPenalty)
+        - sumWeight * sum;
+  }
+}
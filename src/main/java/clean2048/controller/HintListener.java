@@ -0,0 +1,12 @@
+package clean2048.controller;
+
+/* Receives the hint requests made by the player through TerminalGameController. */
+public interface HintListener {
+  /* Called when the player asks for a hint for the current position. */
+  void onHintRequested();
+
+  /* Called on every key press, and again right before a queued move is handed to the game,
+   * since after that any hint being computed or shown may no longer match the board.
+   */
+  void onHintInvalidated();
+}
@@ -1,31 +1,197 @@
 package clean2048.controller;
 
 import clean2048.lib.lanterna.LanternaTerminal;
-import com.googlecode.lanterna.input.KeyType;
+import com.googlecode.lanterna.input.KeyStroke;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import lombok.Getter;
 
+/*
+Reads the keyboard on a thread of its own, so that keys typed while the game is busy
+applying a move or drawing the screen are not held up behind it. The input thread only
+translates key strokes and puts them in a bounded queue, and the game takes its moves
+from that queue at its own pace.
+*/
 public class TerminalGameController {
+  public static final char HINT_KEY = 'h';
+  public static final char PAN_UP_KEY = 'w';
+  public static final char PAN_LEFT_KEY = 'a';
+  public static final char PAN_DOWN_KEY = 's';
+  public static final char PAN_RIGHT_KEY = 'd';
+  public static final char MINIMAP_KEY = 'm';
+
+  // Far more moves than anyone types ahead. Once the queue is full, further moves
+  // are dropped rather than blocking the input thread, so Escape still gets through.
+  private static final int INPUT_QUEUE_CAPACITY = 32;
+
+  // How long the input thread waits for a key before checking whether it has been stopped.
+  private static final Duration INPUT_POLL_TIMEOUT = Duration.ofMillis(100);
+
   private final LanternaTerminal terminal;
+  private final BlockingQueue<PlayerInput> inputs =
+      new ArrayBlockingQueue<>(INPUT_QUEUE_CAPACITY);
+  private HintListener hintListener;
+  private ViewportListener viewportListener;
+  private Thread inputThread;
 
   public TerminalGameController(LanternaTerminal terminal) {
     this.terminal = terminal;
   }
 
-  public Optional<Direction> getMove() throws InterruptGameException {
-    KeyType key;
+  /* Without a listener the hint key is ignored like any other unknown key. */
+  public void setHintListener(HintListener hintListener) {
+    this.hintListener = hintListener;
+  }
+
+  /* Without a listener the panning and minimap keys are ignored. */
+  public void setViewportListener(ViewportListener viewportListener) {
+    this.viewportListener = viewportListener;
+  }
+
+  public void startReadingInput() {
+    inputThread = new Thread(this::readInput, "input");
+    inputThread.setDaemon(true);
+    inputThread.start();
+  }
+
+  /* Must be called before anything else reads the terminal, otherwise the input thread
+   * would compete with it for key strokes. Input which hasn't been taken yet is discarded.
+   */
+  public void stopReadingInput() {
+    if (inputThread == null) {
+      return;
+    }
+    inputThread.interrupt();
     try {
-      key = terminal.getUserInput();
+      inputThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    inputThread = null;
+    inputs.clear();
+  }
+
+  /* Waits for the next move. Hint requests queued before it are passed on to the listener
+   * from the calling thread, so they are made for the board the preceding moves produced.
+   */
+  public Direction takeMove() throws InterruptGameException {
+    try {
+      while (true) {
+        Optional<Direction> move = handleInput(inputs.take());
+        if (move.isPresent()) {
+          return move.get();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptGameException();
+    }
+  }
+
+  /* Returns the next queued move, or nothing if the player hasn't typed one ahead. */
+  public Optional<Direction> pollMove() throws InterruptGameException {
+    for (PlayerInput input = inputs.poll(); input != null; input = inputs.poll()) {
+      Optional<Direction> move = handleInput(input);
+      if (move.isPresent()) {
+        return move;
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<Direction> handleInput(PlayerInput input) throws InterruptGameException {
+    switch (input) {
+      case QUIT -> throw new InterruptGameException();
+      case HINT -> {
+        hintListener.onHintRequested();
+        return Optional.empty();
+      }
+      default -> {
+        // The input thread has already hidden the hint, but one may have been requested
+        // in the meantime for the board this move is about to change.
+        if (hintListener != null) {
+          hintListener.onHintInvalidated();
+        }
+        return Optional.of(input.getDirection());
+      }
+    }
+  }
+
+  private void readInput() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Optional<KeyStroke> key = terminal.pollKeyStroke(INPUT_POLL_TIMEOUT);
+        if (key.isPresent()) {
+          handleKeyStroke(key.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      // Stopped by stopReadingInput.
     } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-    return switch (key) {
-      case ArrowLeft -> Optional.of(Direction.LEFT);
-      case ArrowUp -> Optional.of(Direction.UP);
-      case ArrowDown -> Optional.of(Direction.DOWN);
-      case ArrowRight -> Optional.of(Direction.RIGHT);
-      case Escape -> throw new InterruptGameException();
-      default -> Optional.empty();
-    };
+      // Without a keyboard the game cannot go on, so we end it as if the player had quit.
+      inputs.clear();
+      inputs.offer(PlayerInput.QUIT);
+    }
+  }
+
+  private void handleKeyStroke(KeyStroke key) throws InterruptedException {
+    // The viewport doesn't change the board, so these keys are handled straight away
+    // instead of going through the queue, and they leave the hint alone.
+    if (viewportListener != null && handleViewportKey(key)) {
+      return;
+    }
+    if (hintListener != null) {
+      hintListener.onHintInvalidated();
+      if (isHintKey(key)) {
+        inputs.offer(PlayerInput.HINT);
+      }
+    }
+    switch (key.getKeyType()) {
+      case ArrowLeft -> inputs.offer(PlayerInput.MOVE_LEFT);
+      case ArrowUp -> inputs.offer(PlayerInput.MOVE_UP);
+      case ArrowDown -> inputs.offer(PlayerInput.MOVE_DOWN);
+      case ArrowRight -> inputs.offer(PlayerInput.MOVE_RIGHT);
+      case Escape -> inputs.put(PlayerInput.QUIT);
+      default -> {}
+    }
+  }
+
+  private boolean handleViewportKey(KeyStroke key) {
+    if (key.getCharacter() == null) {
+      return false;
+    }
+    switch (Character.toLowerCase(key.getCharacter())) {
+      case PAN_UP_KEY -> viewportListener.onPan(Direction.UP);
+      case PAN_LEFT_KEY -> viewportListener.onPan(Direction.LEFT);
+      case PAN_DOWN_KEY -> viewportListener.onPan(Direction.DOWN);
+      case PAN_RIGHT_KEY -> viewportListener.onPan(Direction.RIGHT);
+      case MINIMAP_KEY -> viewportListener.onMinimapToggled();
+      default -> {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isHintKey(KeyStroke key) {
+    return key.getCharacter() != null && Character.toLowerCase(key.getCharacter()) == HINT_KEY;
+  }
+
+  private enum PlayerInput {
+    MOVE_LEFT(Direction.LEFT),
+    MOVE_UP(Direction.UP),
+    MOVE_DOWN(Direction.DOWN),
+    MOVE_RIGHT(Direction.RIGHT),
+    HINT(null),
+    QUIT(null);
+
+    @Getter private final Direction direction;
+
+    PlayerInput(Direction direction) {
+      this.direction = direction;
+    }
   }
 }
@@ -0,0 +1,11 @@
+package clean2048.controller;
+
+/* Receives the keys which change what part of the board is shown, without affecting the game.
+ * Called on the input thread as soon as the key is pressed.
+ */
+public interface ViewportListener {
+  /* Called when the player wants to see more of the board in the given direction. */
+  void onPan(Direction direction);
+
+  void onMinimapToggled();
+}
@@ -0,0 +1,288 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import lombok.Getter;
+
+/*
+An implementation of the game rules specialised for the classic 4x4 board.
+The whole board is packed into a single long: each of the 16 cells takes up 4 bits which
+store the exponent of the tile value (0 for an empty cell, 1 for 2, 2 for 4 and so on).
+Cell (x, y) lives in the nibble with index 4 * y + x, so each row of the board is
+a 16-bit chunk of the long with its leftmost cell in the lowest nibble.
+
+Because a row has only 2^16 possible states, the result of shifting any row to the left
+or to the right (and the score that shift produces) can be computed once up front.
+A horizontal move is then four table lookups, and a vertical move is the same thing
+performed on the transposed board.
+*/
+public class BitboardGameEngine implements Engine {
+  public static final int DIMENSION = 4;
+  private static final int CELL_COUNT = DIMENSION * DIMENSION;
+  private static final int ROW_BITS = 16;
+  private static final int ROW_COUNT = 1 << ROW_BITS;
+  private static final long ROW_MASK = ROW_COUNT - 1;
+  private static final long CELL_MASK = 0xF;
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  /* A nibble cannot hold an exponent larger than 15 (the 32768 tile), so two such tiles
+   * are treated as if they could not be merged. Reaching that state on a 4x4 board is
+   * practically impossible, but we still need to guard against overflowing into
+   * the neighbouring cell.
+   */
+  private static final int MAX_EXPONENT = 15;
+
+  private static final char[] ROW_LEFT = new char[ROW_COUNT];
+  private static final char[] ROW_RIGHT = new char[ROW_COUNT];
+  private static final int[] ROW_LEFT_SCORE = new int[ROW_COUNT];
+  private static final int[] ROW_RIGHT_SCORE = new int[ROW_COUNT];
+
+  static {
+    for (int row = 0; row < ROW_COUNT; row++) {
+      int[] exponents = decodeRow(row);
+      ROW_LEFT_SCORE[row] = mergeLeft(exponents);
+      ROW_LEFT[row] = (char) encodeRow(exponents);
+    }
+    // Shifting a row to the right is the same as reversing it,
+    // shifting it to the left and reversing the result back.
+    for (int row = 0; row < ROW_COUNT; row++) {
+      int reversed = reverseRow(row);
+      ROW_RIGHT[row] = (char) reverseRow(ROW_LEFT[reversed]);
+      ROW_RIGHT_SCORE[row] = ROW_LEFT_SCORE[reversed];
+    }
+  }
+
+  private final RandomGenerator random;
+  long board;
+  @Getter private int score;
+
+  // The legal moves of the last board they were computed for. A move is only four table
+  // lookups here, so it is enough to remember the board itself instead of tracking changes.
+  private long legalMovesBoard;
+  private int legalMoveMask = MoveMask.NONE;
+
+  public BitboardGameEngine() {
+    this(new SplittableRandom());
+  }
+
+  public BitboardGameEngine(RandomGenerator random) {
+    this.random = random;
+  }
+
+  public void startGame() {
+    spawnTile();
+  }
+
+  public void takeTurn(Direction direction) {
+    if (MoveMask.contains(getLegalMoveMask(), direction)) {
+      score += moveScore(board, direction);
+      board = move(board, direction);
+      spawnTile();
+    }
+  }
+
+  public Set<Direction> legalMoves() {
+    return MoveMask.toSet(getLegalMoveMask());
+  }
+
+  private int getLegalMoveMask() {
+    if (legalMovesBoard != board) {
+      legalMoveMask = computeLegalMoveMask(board);
+      legalMovesBoard = board;
+    }
+    return legalMoveMask;
+  }
+
+  private static int computeLegalMoveMask(long board) {
+    int mask = MoveMask.NONE;
+    for (Direction direction : DIRECTIONS) {
+      if (move(board, direction) != board) {
+        mask |= MoveMask.of(direction);
+      }
+    }
+    return mask;
+  }
+
+  void shift(Direction direction) {
+    score += moveScore(board, direction);
+    board = move(board, direction);
+  }
+
+  /* Any board other than the empty one (which we only have before the game starts)
+   * is over exactly when no move changes it.
+   */
+  public boolean isGameOver() {
+    return board != 0 && getLegalMoveMask() == MoveMask.NONE;
+  }
+
+  public int[][] getSimplifiedGrid() {
+    int[][] grid = new int[DIMENSION][DIMENSION];
+    for (int y = 0; y < DIMENSION; y++) {
+      for (int x = 0; x < DIMENSION; x++) {
+        grid[y][x] = exponentToValue(getExponent(board, 4 * y + x));
+      }
+    }
+    return grid;
+  }
+
+  public int getTile(int row, int column) {
+    return exponentToValue(getExponent(board, 4 * row + column));
+  }
+
+  public long getBoard() {
+    return board;
+  }
+
+  private void spawnTile() {
+    Tile newTile = Tile.generateRandomTile(random);
+    int target = random.nextInt(countEmptyCells(board));
+    for (int cell = 0; cell < CELL_COUNT; cell++) {
+      if (getExponent(board, cell) == 0 && target-- == 0) {
+        board = setExponent(board, cell, valueToExponent(newTile.getValue()));
+        break;
+      }
+    }
+    score += newTile.getValue();
+  }
+
+  public static long move(long board, Direction direction) {
+    return switch (direction) {
+      case LEFT -> moveRows(board, ROW_LEFT);
+      case RIGHT -> moveRows(board, ROW_RIGHT);
+      case UP -> moveColumns(board, ROW_LEFT);
+      case DOWN -> moveColumns(board, ROW_RIGHT);
+    };
+  }
+
+  public static int moveScore(long board, Direction direction) {
+    return switch (direction) {
+      case LEFT -> rowScore(board, ROW_LEFT_SCORE);
+      case RIGHT -> rowScore(board, ROW_RIGHT_SCORE);
+      case UP -> rowScore(transpose(board), ROW_LEFT_SCORE);
+      case DOWN -> rowScore(transpose(board), ROW_RIGHT_SCORE);
+    };
+  }
+
+  private static long moveRows(long board, char[] table) {
+    long result = 0;
+    for (int row = 0; row < DIMENSION; row++) {
+      int shift = ROW_BITS * row;
+      result |= (long) table[(int) ((board >>> shift) & ROW_MASK)] << shift;
+    }
+    return result;
+  }
+
+  /* After transposing, the columns of the board become its rows with the top cell
+   * in the lowest nibble, so moving up is a left shift and moving down is a right shift.
+   */
+  private static long moveColumns(long board, char[] table) {
+    return transpose(moveRows(transpose(board), table));
+  }
+
+  private static int rowScore(long board, int[] table) {
+    int score = 0;
+    for (int row = 0; row < DIMENSION; row++) {
+      score += table[(int) ((board >>> (ROW_BITS * row)) & ROW_MASK)];
+    }
+    return score;
+  }
+
+  /* Swaps cell (x, y) with cell (y, x) by moving the off-diagonal nibbles and then
+   * the off-diagonal 2x2 blocks into place, without touching individual cells.
+   */
+  public static long transpose(long board) {
+    long a1 = board & 0xF0F00F0FF0F00F0FL;
+    long a2 = board & 0x0000F0F00000F0F0L;
+    long a3 = board & 0x0F0F00000F0F0000L;
+    long a = a1 | (a2 << 12) | (a3 >>> 12);
+    long b1 = a & 0xFF00FF0000FF00FFL;
+    long b2 = a & 0x00FF00FF00000000L;
+    long b3 = a & 0x00000000FF00FF00L;
+    return b1 | (b2 >>> 24) | (b3 << 24);
+  }
+
+  public static int countEmptyCells(long board) {
+    int emptyCells = 0;
+    for (int cell = 0; cell < CELL_COUNT; cell++) {
+      if (getExponent(board, cell) == 0) {
+        emptyCells++;
+      }
+    }
+    return emptyCells;
+  }
+
+  public static int getExponent(long board, int cell) {
+    return (int) ((board >>> (4 * cell)) & CELL_MASK);
+  }
+
+  public static long setExponent(long board, int cell, int exponent) {
+    int shift = 4 * cell;
+    return (board & ~(CELL_MASK << shift)) | ((long) exponent << shift);
+  }
+
+  static long encode(int[][] grid) {
+    long board = 0;
+    for (int y = 0; y < DIMENSION; y++) {
+      for (int x = 0; x < DIMENSION; x++) {
+        board |= (long) valueToExponent(grid[y][x]) << (4 * (4 * y + x));
+      }
+    }
+    return board;
+  }
+
+  private static int exponentToValue(int exponent) {
+    return (exponent == 0) ? 0 : 1 << exponent;
+  }
+
+  private static int valueToExponent(int value) {
+    return (value == 0) ? 0 : Integer.numberOfTrailingZeros(value);
+  }
+
+  /* Performs the same merge as GameEngine.mergeLeft on a row of exponents in place
+   * and returns the score gained from it.
+   */
+  private static int mergeLeft(int[] exponents) {
+    int score = 0;
+    int target = 0;
+    int previous = 0;
+    for (int exponent : exponents) {
+      if (exponent == 0) {
+        continue;
+      }
+      if (exponent == previous && exponent < MAX_EXPONENT) {
+        exponents[target - 1] = exponent + 1;
+        score += exponentToValue(exponent + 1);
+        previous = 0;
+      } else {
+        exponents[target++] = exponent;
+        previous = exponent;
+      }
+    }
+    while (target < exponents.length) {
+      exponents[target++] = 0;
+    }
+    return score;
+  }
+
+  private static int[] decodeRow(int row) {
+    int[] exponents = new int[DIMENSION];
+    for (int x = 0; x < DIMENSION; x++) {
+      exponents[x] = (row >>> (4 * x)) & (int) CELL_MASK;
+    }
+    return exponents;
+  }
+
+  private static int encodeRow(int[] exponents) {
+    int row = 0;
+    for (int x = 0; x < DIMENSION; x++) {
+      row |= exponents[x] << (4 * x);
+    }
+    return row;
+  }
+
+  private static int reverseRow(int row) {
+    return ((row & 0xF) << 12) | ((row & 0xF0) << 4) | ((row >>> 4) & 0xF0) | (row >>> 12);
+  }
+}
@@ -0,0 +1,73 @@
+package clean2048.engine;
+
+import java.util.random.RandomGenerator;
+
+/*
+Keeps track of which cells of the board are empty so that a new tile can be spawned
+without searching the board for a free spot.
+
+The empty cells are kept in a dense array, and for each cell we remember its position
+in that array (or -1 if the cell is occupied). This way marking a cell as empty or
+occupied only needs to append to the array or swap the removed entry with the last one,
+and picking a uniformly random empty cell is a single array lookup.
+*/
+class EmptyCellIndex {
+  private static final int ABSENT = -1;
+  private final int[] emptyCells;
+  private final int[] positions;
+  private int size;
+
+  /* Creates an index for a board with the given number of cells, all of which are empty. */
+  EmptyCellIndex(int cellCount) {
+    this.emptyCells = new int[cellCount];
+    this.positions = new int[cellCount];
+    for (int cell = 0; cell < cellCount; cell++) {
+      emptyCells[cell] = cell;
+      positions[cell] = cell;
+    }
+    this.size = cellCount;
+  }
+
+  void update(int cell, boolean isEmpty) {
+    if (isEmpty) {
+      markEmpty(cell);
+    } else {
+      markOccupied(cell);
+    }
+  }
+
+  void markEmpty(int cell) {
+    if (positions[cell] != ABSENT) {
+      return;
+    }
+    emptyCells[size] = cell;
+    positions[cell] = size;
+    size++;
+  }
+
+  void markOccupied(int cell) {
+    int position = positions[cell];
+    if (position == ABSENT) {
+      return;
+    }
+    size--;
+    int lastCell = emptyCells[size];
+    emptyCells[position] = lastCell;
+    positions[lastCell] = position;
+    positions[cell] = ABSENT;
+  }
+
+  boolean isEmpty(int cell) {
+    return positions[cell] != ABSENT;
+  }
+
+  /* Returns an empty cell chosen uniformly at random. Must not be called on a full board. */
+  int getRandomEmptyCell(RandomGenerator random) {
+    assert size > 0 : "There are no empty cells left on the board";
+    return emptyCells[random.nextInt(size)];
+  }
+
+  int size() {
+    return size;
+  }
+}
@@ -0,0 +1,43 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/*
+The contract shared by all implementations of the game rules. The game loop only ever
+needs to start the game, apply moves, check whether the game is over and read the
+current state back for rendering, so alternative board representations can be swapped
+in without the rest of the application noticing.
+
+Implementations draw all their randomness from a RandomGenerator passed in at construction.
+Given the same generator seed and the same sequence of moves, an engine always plays out
+the same game. Generators are not thread-safe, so engines running in parallel should each
+get their own one, e.g. by calling SplittableRandom.split() once per engine.
+*/
+public interface Engine {
+  /* The bitboard engine is by far the fastest, but it can only represent a 4x4 board. */
+  static Engine forDimension(int dimension, RandomGenerator random) {
+    return (dimension == BitboardGameEngine.DIMENSION)
+        ? new BitboardGameEngine(random)
+        : new FlatGameEngine(dimension, random);
+  }
+
+  void startGame();
+
+  void takeTurn(Direction direction);
+
+  boolean isGameOver();
+
+  /* Returns the moves that would change the state of the board. */
+  Set<Direction> legalMoves();
+
+  int getScore();
+
+  int[][] getSimplifiedGrid();
+
+  /* The value of a single tile, 0 for an empty cell. Unlike getSimplifiedGrid it doesn't copy
+   * the board, so showing a part of a large board only costs as much as the part shown.
+   */
+  int getTile(int row, int column);
+}
@@ -0,0 +1,190 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import lombok.Getter;
+
+/*
+An implementation of the game rules for boards of arbitrary dimension.
+Instead of a grid of Tile objects, the board is a single flat array holding the exponent
+of each tile value (0 for an empty cell, 1 for 2, 2 for 4 and so on), with cell (x, y)
+stored at index y * dimension + x.
+
+Every row or column is just an arithmetic sequence of indices in that array, so a move
+walks each of them from the edge the tiles are pushed towards and compacts it in place.
+This way no transposed or reversed copies of the board are ever created.
+*/
+public class FlatGameEngine implements Engine {
+  private final int dimension;
+  final byte[] cells;
+  private final EmptyCellIndex emptyCells;
+  private final RandomGenerator random;
+  @Getter private int score;
+
+  // Legal moves are computed at most once per state of the board and then shared by
+  // takeTurn, isGameOver and legalMoves, so none of them needs to rescan the board.
+  private int legalMoveMask;
+  private boolean legalMovesStale = true;
+
+  public FlatGameEngine(int dimension) {
+    this(dimension, new SplittableRandom());
+  }
+
+  public FlatGameEngine(int dimension, RandomGenerator random) {
+    this.dimension = dimension;
+    this.random = random;
+    this.cells = new byte[dimension * dimension];
+    this.emptyCells = new EmptyCellIndex(cells.length);
+  }
+
+  public void startGame() {
+    spawnTile();
+  }
+
+  public void takeTurn(Direction direction) {
+    if (MoveMask.contains(getLegalMoveMask(), direction)) {
+      shift(direction);
+      spawnTile();
+    }
+  }
+
+  public Set<Direction> legalMoves() {
+    return MoveMask.toSet(getLegalMoveMask());
+  }
+
+  private int getLegalMoveMask() {
+    if (legalMovesStale) {
+      legalMoveMask = computeLegalMoveMask();
+      legalMovesStale = false;
+    }
+    return legalMoveMask;
+  }
+
+  private int computeLegalMoveMask() {
+    int mask = MoveMask.NONE;
+    for (int line = 0; line < dimension && mask != MoveMask.ALL; line++) {
+      mask |= getLineLegalMoveMask(line * dimension, 1, Direction.LEFT, Direction.RIGHT);
+      mask |= getLineLegalMoveMask(line, dimension, Direction.UP, Direction.DOWN);
+    }
+    return mask;
+  }
+
+  /* Same as GameEngine.getLineLegalMoveMask, the line is walked from the edge
+   * that the first direction pushes the tiles towards.
+   */
+  private int getLineLegalMoveMask(
+      int start, int step, Direction towardsStart, Direction towardsEnd) {
+    boolean canMoveTowardsStart = false;
+    boolean canMoveTowardsEnd = false;
+    boolean seenEmptyCell = false;
+    byte previousExponent = 0;
+    for (int i = 0, index = start; i < dimension; i++, index += step) {
+      byte exponent = cells[index];
+      if (exponent == 0) {
+        seenEmptyCell = true;
+        canMoveTowardsEnd |= previousExponent != 0;
+      } else {
+        canMoveTowardsStart |= seenEmptyCell;
+        if (exponent == previousExponent) {
+          canMoveTowardsStart = true;
+          canMoveTowardsEnd = true;
+        }
+        previousExponent = exponent;
+      }
+    }
+    return (canMoveTowardsStart ? MoveMask.of(towardsStart) : MoveMask.NONE)
+        | (canMoveTowardsEnd ? MoveMask.of(towardsEnd) : MoveMask.NONE);
+  }
+
+  /* Shifts all rows/columns in the given direction and returns whether anything moved.
+   * Each line is described by the index of the cell lying on the edge the tiles are
+   * pushed towards and the step that needs to be taken to get to the next cell of the line.
+   */
+  boolean shift(Direction direction) {
+    boolean changed = false;
+    for (int line = 0; line < dimension; line++) {
+      changed |=
+          switch (direction) {
+            case LEFT -> mergeLine(line * dimension, 1);
+            case RIGHT -> mergeLine(line * dimension + dimension - 1, -1);
+            case UP -> mergeLine(line, dimension);
+            case DOWN -> mergeLine((dimension - 1) * dimension + line, -dimension);
+          };
+    }
+    return changed;
+  }
+
+  /* Equivalent of GameEngine.mergeLeft where the 'left' end of the line is the start index.
+   * Non-empty tiles are moved down to the next free position, and a tile is merged into
+   * the previously placed one if they have the same value and that one hasn't been merged
+   * already during this move.
+   */
+  private boolean mergeLine(int start, int step) {
+    boolean changed = false;
+    int target = start;
+    int mergeableExponent = 0;
+    for (int i = 0, index = start; i < dimension; i++, index += step) {
+      byte exponent = cells[index];
+      if (exponent == 0) {
+        continue;
+      }
+      if (exponent == mergeableExponent) {
+        byte mergedExponent = (byte) (exponent + 1);
+        setCell(index, (byte) 0);
+        setCell(target - step, mergedExponent);
+        score += exponentToValue(mergedExponent);
+        mergeableExponent = 0;
+        changed = true;
+      } else {
+        if (target != index) {
+          setCell(index, (byte) 0);
+          setCell(target, exponent);
+          changed = true;
+        }
+        mergeableExponent = exponent;
+        target += step;
+      }
+    }
+    return changed;
+  }
+
+  /* All writes to the board go through here so that the index of empty cells
+   * stays in sync with the contents of the board.
+   */
+  void setCell(int index, byte exponent) {
+    cells[index] = exponent;
+    emptyCells.update(index, exponent == 0);
+    legalMovesStale = true;
+  }
+
+  private void spawnTile() {
+    Tile newTile = Tile.generateRandomTile(random);
+    int cell = emptyCells.getRandomEmptyCell(random);
+    setCell(cell, (byte) Integer.numberOfTrailingZeros(newTile.getValue()));
+    score += newTile.getValue();
+  }
+
+  public boolean isGameOver() {
+    return emptyCells.size() == 0 && getLegalMoveMask() == MoveMask.NONE;
+  }
+
+  public int[][] getSimplifiedGrid() {
+    int[][] grid = new int[dimension][dimension];
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        grid[y][x] = exponentToValue(cells[y * dimension + x]);
+      }
+    }
+    return grid;
+  }
+
+  public int getTile(int row, int column) {
+    return exponentToValue(cells[row * dimension + column]);
+  }
+
+  private static int exponentToValue(int exponent) {
+    return (exponent == 0) ? 0 : 1 << exponent;
+  }
+}
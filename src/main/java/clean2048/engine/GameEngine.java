@@ -1,192 +1,365 @@
 package clean2048.engine;
 
-import static clean2048.engine.GridUtil.*;
-
 import clean2048.controller.Direction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 import lombok.Getter;
 
-public class GameEngine {
+public class GameEngine implements Engine {
   private final int dimension;
   Tile[][] grid;
   @Getter private int score;
-  private int occupiedTiles;
+  private final EmptyCellIndex emptyCells;
+  // Set when the grid may have been changed from outside, the index is then rebuilt from
+  // the grid before it is next used.
+  private boolean emptyCellsStale;
+  private final RandomGenerator random;
+
+  // Scratch space for the row/column being merged, reused across moves
+  // so that taking a turn doesn't allocate anything.
+  private final Tile[] lineBuffer;
+
+  // Legal moves are computed at most once per state of the board and then shared by
+  // takeTurn, isGameOver and legalMoves, so none of them needs to rescan the board.
+  private int legalMoveMask;
+  private boolean legalMovesStale = true;
+
+  // A Zobrist hash of the board: the XOR of a pseudo-random key for every (cell, tile value)
+  // pair present on the board. Moving, merging or spawning a tile only flips the keys of
+  // the cells it touches, so the hash is kept up to date at a constant cost per changed cell.
+  // The empty board hashes to 0.
+  private long zobristHash;
+  private boolean zobristHashStale;
+
+  // Turns are only recorded while someone is listening, so that the engine doesn't pay for
+  // the bookkeeping otherwise. The delta is created with the first listener and then reused.
+  private final List<MoveListener> moveListeners = new ArrayList<>();
+  private MoveDelta moveDelta;
 
   public GameEngine(int gridDimension) {
+    this(gridDimension, new SplittableRandom());
+  }
+
+  public GameEngine(int gridDimension, RandomGenerator random) {
     this.dimension = gridDimension;
+    this.random = random;
     grid = GridUtil.initialiseGrid(this.dimension);
+    emptyCells = new EmptyCellIndex(dimension * dimension);
+    lineBuffer = new Tile[dimension];
   }
 
   public void startGame() {
-    spawnTile();
+    boolean record = isRecordingMoves();
+    if (record) {
+      moveDelta.reset(null);
+    }
+    spawnTile(record);
+    if (record) {
+      notifyMoveListeners();
+    }
   }
 
   public void takeTurn(Direction direction) {
-    if (shiftWillChangeState(direction)) {
-      shift(direction);
-      spawnTile();
+    if (MoveMask.contains(getLegalMoveMask(), direction)) {
+      boolean record = isRecordingMoves();
+      if (record) {
+        moveDelta.reset(direction);
+      }
+      shift(direction, record);
+      spawnTile(record);
+      if (record) {
+        notifyMoveListeners();
+      }
     }
   }
 
-  private boolean shiftWillChangeState(Direction direction) {
-    /* The shift will change state if it will cause a merge in that direction,
-     * or if there is enough empty space so that tiles will change their position.
-     * An important edge case is when we are trying to shift in say vertical direction and all
-     * columns are either empty or fully filled with a non-merge-able sequences of tiles.
-     * In this case, no tiles will move around and the state will not change.
-     * Hence, we don't spawn a new tile because the user needs to shift in the perpendicular
-     * direction.
-     */
-    boolean mergeWillOccur =
-        (direction.isVertical()) ? verticalMergePossible() : horizontalMergePossible();
-    return isSpaceToMove(direction) || mergeWillOccur;
+  public void addMoveListener(MoveListener listener) {
+    if (moveDelta == null) {
+      moveDelta = new MoveDelta(dimension);
+    }
+    moveListeners.add(listener);
+  }
+
+  public void removeMoveListener(MoveListener listener) {
+    moveListeners.remove(listener);
+  }
+
+  private boolean isRecordingMoves() {
+    return !moveListeners.isEmpty();
   }
 
-  private boolean isSpaceToMove(Direction direction) {
-    if (direction.isVertical()) {
-      return IntStream.range(0, dimension)
-          .anyMatch(i -> canBeShifted(getColumn(i, grid), direction));
-    } else {
-      return Arrays.stream(grid).anyMatch(row -> canBeShifted(row, direction));
+  private void notifyMoveListeners() {
+    // An indexed loop, since an iterator would be allocated on every turn.
+    for (int i = 0; i < moveListeners.size(); i++) {
+      moveListeners.get(i).onMove(moveDelta);
     }
   }
 
-  private boolean canBeShifted(Tile[] sequence, Direction direction) {
-    /* A sequence can be shifted if it contains an empty tile followed by a non-empty tile which will
-     * occupy its place after the shift. We need to be able to identify such sequences of
-     * tiles to be able to determine if a shift requested by the user will change the state of
-     * the game grid, and thus we'll execute the shift and spawn a new tile.
-     */
-    Tile[] orientedSeq = (needsBackwardsMerging(direction)) ? reverse(sequence) : sequence;
-    return IntStream.range(0, sequence.length)
-        .anyMatch(i -> orientedSeq[i].isEmpty() && hasNonEmptySuccessor(i, orientedSeq));
+  public Set<Direction> legalMoves() {
+    return MoveMask.toSet(getLegalMoveMask());
   }
 
-  private boolean hasNonEmptySuccessor(int index, Tile[] sequence) {
-    Tile[] successors = Arrays.copyOfRange(sequence, index + 1, sequence.length);
-    return Arrays.stream(successors).anyMatch(Predicate.not(Tile::isEmpty));
+  private int getLegalMoveMask() {
+    if (legalMovesStale) {
+      legalMoveMask = computeLegalMoveMask();
+      legalMovesStale = false;
+    }
+    return legalMoveMask;
   }
 
-  public void shift(Direction direction) {
-    if (direction.isVertical()) {
-      shiftVertically(direction);
-    } else {
-      shiftHorizontally(direction);
+  private int computeLegalMoveMask() {
+    int mask = MoveMask.NONE;
+    for (int line = 0; line < dimension && mask != MoveMask.ALL; line++) {
+      mask |= getLineLegalMoveMask(line, Direction.LEFT, Direction.RIGHT);
+      mask |= getLineLegalMoveMask(line, Direction.UP, Direction.DOWN);
     }
+    return mask;
   }
 
-  private void shiftVertically(Direction direction) {
-    assert (direction.isVertical());
-    grid = GridUtil.transpose(grid);
-    shiftHorizontally(direction);
-    grid = GridUtil.transpose(grid);
+  /* Checks in a single pass which of the two opposite moves along a row/column would change
+   * it. The line is walked from the edge that the first direction pushes the tiles towards.
+   * A tile can move towards that edge if there is an empty cell before it, and towards the
+   * opposite edge if there is an empty cell after it. Two consecutive tiles of the same
+   * value (possibly separated by empty cells) can be merged in either direction.
+   */
+  private int getLineLegalMoveMask(int line, Direction towardsStart, Direction towardsEnd) {
+    boolean canMoveTowardsStart = false;
+    boolean canMoveTowardsEnd = false;
+    boolean seenEmptyCell = false;
+    Tile previousTile = null;
+    for (int i = 0; i < dimension; i++) {
+      int cell = getCell(line, i, towardsStart);
+      Tile tile = grid[cell / dimension][cell % dimension];
+      if (tile.isEmpty()) {
+        seenEmptyCell = true;
+        canMoveTowardsEnd |= previousTile != null;
+      } else {
+        canMoveTowardsStart |= seenEmptyCell;
+        if (tile.equals(previousTile)) {
+          canMoveTowardsStart = true;
+          canMoveTowardsEnd = true;
+        }
+        previousTile = tile;
+      }
+    }
+    return (canMoveTowardsStart ? MoveMask.of(towardsStart) : MoveMask.NONE)
+        | (canMoveTowardsEnd ? MoveMask.of(towardsEnd) : MoveMask.NONE);
   }
 
-  private void shiftHorizontally(Direction direction) {
-    grid = Arrays.stream(grid).map(row -> merge(row, direction)).toArray(Tile[][]::new);
+  /* Shifts the grid in the given direction and returns whether the state has changed.
+   * The shift changes the state if it causes a merge in that direction, or if there is
+   * enough empty space so that tiles change their position.
+   * An important edge case is when we are trying to shift in say vertical direction and all
+   * columns are either empty or fully filled with a non-merge-able sequences of tiles.
+   * In this case, no tiles will move around and the state will not change.
+   * Hence, we don't spawn a new tile because the user needs to shift in the perpendicular
+   * direction.
+   */
+  public boolean shift(Direction direction) {
+    return shift(direction, false);
   }
 
-  private Tile[] merge(Tile[] row, Direction direction) {
-    return (needsBackwardsMerging(direction)) ? reverse(mergeLeft(reverse(row))) : mergeLeft(row);
+  private boolean shift(Direction direction, boolean record) {
+    boolean changed = false;
+    for (int line = 0; line < dimension; line++) {
+      readLine(line, direction);
+      if (mergeInPlace(lineBuffer, line, direction, record)) {
+        writeLine(line, direction);
+        changed = true;
+      }
+    }
+    legalMovesStale |= changed;
+    return changed;
   }
 
-  /* A direction requires 'backwards merging' when it is either DOWN or RIGHT.
-   * The reason for that is that when you have a following row: [ _, 2, 2, 2 ]
-   * And you swipe to the right, then the expected merge result that you want to get
-   * is this: [ _, _, 2, 4 ]. However, if we were to use the default mergeLeft function,
-   * the output would be: [ 4, 2, _, _ ]. The same happens when you consider a column
-   * and try shifting downwards. In order to fix this, the row/column (in general 'sequence')
-   * needs to be reversed, and then we can perform the usual mergeLeft and after reversing
-   * again we will get the desired behaviour.
-   */
-  private boolean needsBackwardsMerging(Direction direction) {
-    return direction == Direction.DOWN || direction == Direction.RIGHT;
+  private void readLine(int line, Direction direction) {
+    for (int i = 0; i < dimension; i++) {
+      int cell = getCell(line, i, direction);
+      lineBuffer[i] = grid[cell / dimension][cell % dimension];
+    }
   }
 
-  public Tile[] mergeLeft(Tile[] row) {
-    List<Tile> merged = new ArrayList<>();
-    List<Tile> nonEmptyTiles =
-        new ArrayList<>(Arrays.stream(row).filter(tile -> !tile.isEmpty()).toList());
-
-    while (!nonEmptyTiles.isEmpty()) {
-      if (nonEmptyTiles.size() == 1) {
-        merged.add(nonEmptyTiles.get(0));
-        break;
+  private void writeLine(int line, Direction direction) {
+    for (int i = 0; i < dimension; i++) {
+      int cell = getCell(line, i, direction);
+      Tile previousTile = grid[cell / dimension][cell % dimension];
+      if (!previousTile.equals(lineBuffer[i])) {
+        zobristHash ^= getZobristKey(cell, previousTile) ^ getZobristKey(cell, lineBuffer[i]);
       }
+      grid[cell / dimension][cell % dimension] = lineBuffer[i];
+      emptyCells.update(cell, lineBuffer[i].isEmpty());
+    }
+  }
 
-      Tile current = nonEmptyTiles.remove(0);
-      Tile successor = nonEmptyTiles.get(0);
+  /* Returns the index (y * dimension + x) of the i-th cell of a row/column, counting from
+   * the edge that the tiles are pushed towards. The reason for that is that when you have
+   * a following row: [ _, 2, 2, 2 ] and you swipe to the right, then the expected merge
+   * result that you want to get is this: [ _, _, 2, 4 ]. If we were to walk the row from
+   * the left, the output would be: [ 4, 2, _, _ ]. Walking the sequence from the right end
+   * allows us to perform the usual merge to the left on it and get the desired behaviour.
+   * The same happens when you consider a column and try shifting downwards.
+   */
+  private int getCell(int line, int i, Direction direction) {
+    int last = dimension - 1;
+    return switch (direction) {
+      case LEFT -> line * dimension + i;
+      case RIGHT -> line * dimension + last - i;
+      case UP -> i * dimension + line;
+      case DOWN -> (last - i) * dimension + line;
+    };
+  }
+
+  public Tile[] mergeLeft(Tile[] row) {
+    Tile[] merged = Arrays.copyOf(row, row.length);
+    mergeInPlace(merged, 0, Direction.LEFT, false);
+    return merged;
+  }
 
-      if (current.equals(successor)) {
-        nonEmptyTiles.remove(0);
-        Tile mergedTile = Tile.merge(current, successor);
-        merged.add(mergedTile);
+  /* Non-empty tiles are moved to the next free position on the left, and a tile is merged
+   * into the previously placed one if they have the same value and that one hasn't been
+   * merged already during this move. Note that two tiles of the same value will be merged
+   * even if there are empty tiles separating them. Returns whether any tile has moved.
+   * When recording, the slides and merges are added to the move delta, with the positions
+   * in the sequence translated back to the cells of the given row/column.
+   */
+  private boolean mergeInPlace(Tile[] sequence, int line, Direction direction, boolean record) {
+    boolean changed = false;
+    int target = 0;
+    Tile mergeableTile = null;
+    for (int i = 0; i < sequence.length; i++) {
+      Tile tile = sequence[i];
+      if (tile.isEmpty()) {
+        continue;
+      }
+      sequence[i] = Tile.getEmptyTile();
+      if (tile.equals(mergeableTile)) {
+        Tile mergedTile = Tile.merge(mergeableTile, tile);
+        sequence[target - 1] = mergedTile;
         score += mergedTile.getValue();
-        occupiedTiles--;
+        mergeableTile = null;
+        changed = true;
+        if (record) {
+          int mergeCell = getCell(line, target - 1, direction);
+          moveDelta.addSlide(getCell(line, i, direction), mergeCell, tile.getValue());
+          moveDelta.addMerge(mergeCell, mergedTile.getValue());
+        }
       } else {
-        merged.add(current);
+        sequence[target] = tile;
+        changed |= target != i;
+        if (record && target != i) {
+          moveDelta.addSlide(
+              getCell(line, i, direction), getCell(line, target, direction), tile.getValue());
+        }
+        mergeableTile = tile;
+        target++;
       }
     }
-
-    // If there is space left in the row, we need to add empty tiles to it.
-    while (merged.size() < dimension) {
-      merged.add(Tile.getEmptyTile());
-    }
-    return merged.toArray(Tile[]::new);
+    return changed;
   }
 
-  private void spawnTile() {
-    Tile newTile = Tile.generateRandomTile();
-    GridUtil.Position emptyCell = GridUtil.getRandomEmptyCell(grid);
-    grid[emptyCell.y()][emptyCell.x()] = newTile;
-    occupiedTiles++;
+  private void spawnTile(boolean record) {
+    Tile newTile = Tile.generateRandomTile(random);
+    int emptyCell = getEmptyCells().getRandomEmptyCell(random);
+    if (record) {
+      moveDelta.setSpawn(emptyCell, newTile.getValue());
+    }
+    grid[emptyCell / dimension][emptyCell % dimension] = newTile;
+    emptyCells.markOccupied(emptyCell);
+    zobristHash ^= getZobristKey(emptyCell, newTile);
     score += newTile.getValue();
+    legalMovesStale = true;
   }
 
+  /* A board that isn't full always allows some move, unless it is completely empty,
+   * which only happens before the game is started.
+   */
   public boolean isGameOver() {
-    return isBoardFull() && noMovePossible();
+    return isBoardFull() && getLegalMoveMask() == MoveMask.NONE;
   }
 
   private boolean isBoardFull() {
-    return occupiedTiles >= dimension * dimension;
+    return getEmptyCells().size() == 0;
   }
 
-  private boolean noMovePossible() {
-    return !horizontalMergePossible() && !verticalMergePossible();
+  private EmptyCellIndex getEmptyCells() {
+    if (emptyCellsStale) {
+      for (int y = 0; y < dimension; y++) {
+        for (int x = 0; x < dimension; x++) {
+          emptyCells.update(y * dimension + x, grid[y][x].isEmpty());
+        }
+      }
+      emptyCellsStale = false;
+    }
+    return emptyCells;
   }
 
-  private boolean horizontalMergePossible() {
-    return Arrays.stream(grid).anyMatch(this::canBeMerged);
+  public int[][] getSimplifiedGrid() {
+    return GridUtil.mapToIntGrid(grid);
   }
 
-  private boolean verticalMergePossible() {
-    return IntStream.range(0, dimension).anyMatch(i -> canBeMerged(GridUtil.getColumn(i, grid)));
+  public int getTile(int row, int column) {
+    return grid[row][column].getValue();
   }
 
-  private boolean canBeMerged(Tile[] sequence) {
-    // A row/column can be merged if it contains two consecutive tiles of the same value
-    // those tiles might be separated by an empty tile, therefore we need to remove those
-    // before we perform the check.
-    List<Tile> nonEmptyTiles =
-        new ArrayList<>(Arrays.stream(sequence).filter(tile -> !tile.isEmpty()).toList());
+  /* The grid is handed out for tests which modify it directly, so we can no longer trust
+   * the legal moves, the hash and the empty cells computed so far.
+   */
+  public Tile[][] getGrid() {
+    legalMovesStale = true;
+    zobristHashStale = true;
+    emptyCellsStale = true;
+    return grid;
+  }
+
+  /* Equal boards always have equal hashes, and different boards of the same dimension
+   * collide with a probability of about 2^-64.
+   */
+  public long getZobristHash() {
+    if (zobristHashStale) {
+      zobristHash = computeZobristHash();
+      zobristHashStale = false;
+    }
+    return zobristHash;
+  }
 
-    for (int i = 0; i < nonEmptyTiles.size() - 1; i++) {
-      if (nonEmptyTiles.get(i).equals(nonEmptyTiles.get(i + 1))) {
-        return true;
+  long computeZobristHash() {
+    long hash = 0;
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        hash ^= getZobristKey(y * dimension + x, grid[y][x]);
       }
     }
-    return false;
+    return hash;
   }
 
-  public int[][] getSimplifiedGrid() {
-    return GridUtil.mapToIntGrid(grid);
+  /* Instead of a table of random keys (which would take megabytes for the largest boards),
+   * the key is derived from the cell and the tile exponent with the SplitMix64 finaliser,
+   * which is just as well mixed and only costs a few arithmetic operations.
+   */
+  private static long getZobristKey(int cell, Tile tile) {
+    if (tile.isEmpty()) {
+      return 0;
+    }
+    long key = ((long) cell << 5 | Integer.numberOfTrailingZeros(tile.getValue())) + 1;
+    key *= 0x9E3779B97F4A7C15L;
+    key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+    key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+    return key ^ (key >>> 31);
   }
 
-  public Tile[][] getGrid() {
-    return grid;
+  /* Replaces the contents of the board, used to set up specific positions. */
+  void setGrid(Tile[][] newGrid) {
+    for (int y = 0; y < dimension; y++) {
+      System.arraycopy(newGrid[y], 0, grid[y], 0, dimension);
+    }
+    // Rebuilt right away, so that setting up a position doesn't slow down the next move.
+    emptyCellsStale = true;
+    getEmptyCells();
+    legalMovesStale = true;
+    zobristHashStale = true;
   }
 }
@@ -1,6 +1,7 @@
 package clean2048.engine;
 
 import java.util.Arrays;
+import java.util.random.RandomGenerator;
 import lombok.Getter;
 
 public class GridUtil {
@@ -19,20 +20,16 @@ public class GridUtil {
     return Arrays.stream(grid).map(row -> row[index]).toArray(Tile[]::new);
   }
 
-  public static Position getRandomEmptyCell(Tile[][] grid) {
+  public static Position getRandomEmptyCell(Tile[][] grid, RandomGenerator random) {
     while (true) {
-      int x = getRandomCoordinate(grid.length);
-      int y = getRandomCoordinate(grid.length);
+      int x = random.nextInt(grid.length);
+      int y = random.nextInt(grid.length);
       if (grid[y][x].isEmpty()) {
         return new Position(x, y);
       }
     }
   }
 
-  private static int getRandomCoordinate(int dimension) {
-    return (int) (100 * Math.random()) % dimension;
-  }
-
   public static int[][] mapToIntGrid(Tile[][] grid) {
     return Arrays.stream(grid)
         .map(row -> Arrays.stream(row).mapToInt(Tile::getValue).toArray())
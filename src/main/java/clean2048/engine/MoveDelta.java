@@ -0,0 +1,117 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Optional;
+import lombok.Getter;
+
+/*
+Describes how one turn changed the board, so that consumers such as renderers, animations
+or replay recorders only need to look at the tiles that changed instead of diffing
+the whole grid. Cells are identified by their index y * dimension + x.
+
+A turn consists of:
+- slides: a tile of the given value moved from one cell to another. Both tiles of a merge
+  are recorded as sliding into the cell of the merged tile (unless they were already there),
+- merges: the cell which now holds a merged tile, and its new value,
+- the spawn: the cell the new tile appeared in, and its value.
+
+The engine reuses a single instance for every turn, so it is only valid until the listener
+returns. Consumers which need it for longer have to copy what they need.
+*/
+public class MoveDelta {
+  private static final int NO_CELL = -1;
+
+  @Getter private final int dimension;
+  private Direction direction;
+  private final int[] slideFrom;
+  private final int[] slideTo;
+  private final int[] slideValue;
+  @Getter private int slideCount;
+  private final int[] mergeCell;
+  private final int[] mergeValue;
+  @Getter private int mergeCount;
+  @Getter private int spawnCell = NO_CELL;
+  @Getter private int spawnValue;
+
+  /* Every tile slides at most once per turn, and every merge takes up two tiles,
+   * so arrays with one entry per cell never overflow.
+   */
+  MoveDelta(int dimension) {
+    this.dimension = dimension;
+    int cellCount = dimension * dimension;
+    slideFrom = new int[cellCount];
+    slideTo = new int[cellCount];
+    slideValue = new int[cellCount];
+    mergeCell = new int[cellCount];
+    mergeValue = new int[cellCount];
+  }
+
+  /* Empty for the delta describing the tile spawned when the game starts. */
+  public Optional<Direction> getDirection() {
+    return Optional.ofNullable(direction);
+  }
+
+  public int getSlideFrom(int slide) {
+    return slideFrom[slide];
+  }
+
+  public int getSlideTo(int slide) {
+    return slideTo[slide];
+  }
+
+  public int getSlideValue(int slide) {
+    return slideValue[slide];
+  }
+
+  public int getMergeCell(int merge) {
+    return mergeCell[merge];
+  }
+
+  public int getMergeValue(int merge) {
+    return mergeValue[merge];
+  }
+
+  public boolean hasSpawn() {
+    return spawnCell != NO_CELL;
+  }
+
+  /* For consumers which handle the turn later, e.g. on another thread. */
+  public MoveDelta copy() {
+    MoveDelta copy = new MoveDelta(dimension);
+    copy.reset(direction);
+    for (int slide = 0; slide < slideCount; slide++) {
+      copy.addSlide(slideFrom[slide], slideTo[slide], slideValue[slide]);
+    }
+    for (int merge = 0; merge < mergeCount; merge++) {
+      copy.addMerge(mergeCell[merge], mergeValue[merge]);
+    }
+    copy.setSpawn(spawnCell, spawnValue);
+    return copy;
+  }
+
+  void reset(Direction direction) {
+    this.direction = direction;
+    slideCount = 0;
+    mergeCount = 0;
+    spawnCell = NO_CELL;
+    spawnValue = 0;
+  }
+
+  void addSlide(int from, int to, int value) {
+    slideFrom[slideCount] = from;
+    slideTo[slideCount] = to;
+    slideValue[slideCount] = value;
+    slideCount++;
+  }
+
+  void addMerge(int cell, int value) {
+    mergeCell[mergeCount] = cell;
+    mergeValue[mergeCount] = value;
+    mergeCount++;
+  }
+
+  void setSpawn(int cell, int value) {
+    spawnCell = cell;
+    spawnValue = value;
+  }
+}
@@ -0,0 +1,8 @@
+package clean2048.engine;
+
+/* Receives a MoveDelta for every turn which changes the board, and one for the tile
+ * spawned when the game starts. Called on the thread taking the turn.
+ */
+public interface MoveListener {
+  void onMove(MoveDelta delta);
+}
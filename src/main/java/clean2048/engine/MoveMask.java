@@ -0,0 +1,47 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+A set of moves encoded as a bit mask with one bit per Direction (indexed by its ordinal).
+Engines compute the mask of legal moves once per state and hand out the matching set from
+a table of precomputed immutable sets, so querying the legal moves never allocates.
+*/
+final class MoveMask {
+  static final int NONE = 0;
+  static final int ALL = (1 << Direction.values().length) - 1;
+
+  private static final Set<Direction>[] SETS = createSets();
+
+  private MoveMask() {}
+
+  static int of(Direction direction) {
+    return 1 << direction.ordinal();
+  }
+
+  static boolean contains(int mask, Direction direction) {
+    return (mask & of(direction)) != 0;
+  }
+
+  static Set<Direction> toSet(int mask) {
+    return SETS[mask];
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Set<Direction>[] createSets() {
+    Set<Direction>[] sets = new Set[ALL + 1];
+    for (int mask = NONE; mask <= ALL; mask++) {
+      EnumSet<Direction> set = EnumSet.noneOf(Direction.class);
+      for (Direction direction : Direction.values()) {
+        if (contains(mask, direction)) {
+          set.add(direction);
+        }
+      }
+      sets[mask] = Collections.unmodifiableSet(set);
+    }
+    return sets;
+  }
+}
@@ -1,30 +1,52 @@
 package clean2048.engine;
 
-import java.util.Objects;
+import java.util.random.RandomGenerator;
 import lombok.Getter;
 
 public class Tile {
+  private static final Tile EMPTY = new Tile(0);
+
+  // Tiles are immutable, so all tiles holding a given power of two can share
+  // a single instance. This way moves and spawns never need to allocate tiles.
+  private static final Tile[] POWERS_OF_TWO = new Tile[Integer.SIZE - 1];
+
+  static {
+    for (int exponent = 0; exponent < POWERS_OF_TWO.length; exponent++) {
+      POWERS_OF_TWO[exponent] = new Tile(1 << exponent);
+    }
+  }
+
   @Getter private final int value;
 
   public Tile(int value) {
     this.value = value;
   }
 
+  public static Tile of(int value) {
+    if (value == 0) {
+      return EMPTY;
+    }
+    if (value > 0 && Integer.bitCount(value) == 1) {
+      return POWERS_OF_TWO[Integer.numberOfTrailingZeros(value)];
+    }
+    return new Tile(value);
+  }
+
   public boolean isEmpty() {
     return value == 0;
   }
 
   public static Tile getEmptyTile() {
-    return new Tile(0);
+    return EMPTY;
   }
 
-  public static Tile generateRandomTile() {
-    int seed = (int) (10 * Math.random()) % InitialTileValues.values().length;
-    return new Tile(InitialTileValues.values()[seed].getValue());
+  public static Tile generateRandomTile(RandomGenerator random) {
+    int seed = random.nextInt(InitialTileValues.VALUES.length);
+    return Tile.of(InitialTileValues.VALUES[seed].getValue());
   }
 
   public static Tile merge(Tile tile1, Tile tile2) {
-    return new Tile(tile1.getValue() + tile2.getValue());
+    return Tile.of(tile1.getValue() + tile2.getValue());
   }
 
   @Override
@@ -37,13 +59,16 @@ public class Tile {
 
   @Override
   public int hashCode() {
-    return Objects.hash(value);
+    return value;
   }
 
   private enum InitialTileValues {
     TWO(2),
     FOUR(4);
 
+    // values() returns a fresh copy of the array on every call.
+    private static final InitialTileValues[] VALUES = values();
+
     @Getter
     private final int value;
 
@@ -0,0 +1,59 @@
+package clean2048.lib.lanterna;
+
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.Terminal;
+import java.io.IOException;
+
+/*
+Collects consecutive text of the same color and sends it to the terminal as a single string,
+preceded by a color change only if the terminal isn't already using that color. Spaces look
+the same in any foreground color, so blank text joins whatever run is open instead of
+breaking it.
+
+Pending text must be flushed before anything else is sent to the terminal, like moving
+the cursor, or it would end up in the wrong place.
+*/
+class ColorRunWriter {
+  private final Terminal terminal;
+  private final StringBuilder run = new StringBuilder();
+  private TextColor runColor;
+  // The color the terminal is currently set to, or null if we don't know.
+  private TextColor terminalColor;
+
+  ColorRunWriter(Terminal terminal) {
+    this.terminal = terminal;
+  }
+
+  void write(char c, TextColor color) throws IOException {
+    if (c != ' ') {
+      startRun(color);
+    }
+    run.append(c);
+  }
+
+  void write(String text, TextColor color) throws IOException {
+    if (!text.isBlank()) {
+      startRun(color);
+    }
+    run.append(text);
+  }
+
+  private void startRun(TextColor color) throws IOException {
+    if (color != runColor) {
+      flush();
+      runColor = color;
+    }
+  }
+
+  void flush() throws IOException {
+    if (run.isEmpty()) {
+      return;
+    }
+    if (runColor != null && runColor != terminalColor) {
+      terminal.setForegroundColor(runColor);
+      terminalColor = runColor;
+    }
+    terminal.putString(run.toString());
+    run.setLength(0);
+  }
+}
@@ -0,0 +1,51 @@
+package clean2048.lib.lanterna;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+Passes everything through to the terminal's output while counting the bytes written and
+the escape sequences among them. Every control sequence the terminal is sent (moving the
+cursor, changing the color, clearing the screen) starts with the ESC character, so counting
+those characters counts the sequences.
+*/
+class CountingOutputStream extends FilterOutputStream {
+  private static final byte ESCAPE = 0x1B;
+  private long bytes;
+  private long escapeSequences;
+
+  CountingOutputStream(OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    count(b);
+  }
+
+  /* FilterOutputStream would write the array a byte at a time. */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    for (int i = off; i < off + len; i++) {
+      count(b[i]);
+    }
+  }
+
+  private void count(int b) {
+    bytes++;
+    if ((byte) b == ESCAPE) {
+      escapeSequences++;
+    }
+  }
+
+  long getBytes() {
+    return bytes;
+  }
+
+  long getEscapeSequences() {
+    return escapeSequences;
+  }
+}
@@ -0,0 +1,89 @@
+package clean2048.lib.lanterna;
+
+import clean2048.view.Color;
+import java.util.Arrays;
+
+/*
+An in-memory copy of the terminal screen: the character and the color of every cell,
+plus a cursor which moves the same way as the one of the real terminal when printing.
+Cells are stored row by row, so index = y * width + x.
+*/
+class FrameBuffer {
+  private static final char BLANK = ' ';
+  private final int width;
+  private final int height;
+  private final char[] characters;
+  private final Color[] colors;
+  private int cursorX;
+  private int cursorY;
+
+  FrameBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.characters = new char[width * height];
+    this.colors = new Color[width * height];
+    clear();
+  }
+
+  void clear() {
+    Arrays.fill(characters, BLANK);
+    Arrays.fill(colors, Color.GREY);
+    cursorX = 0;
+    cursorY = 0;
+  }
+
+  boolean hasSize(int width, int height) {
+    return this.width == width && this.height == height;
+  }
+
+  void setCursorPosition(int x, int y) {
+    cursorX = x;
+    cursorY = y;
+  }
+
+  /* A new line moves the cursor to the start of the next row. Anything printed
+   * outside the screen is dropped, just like the terminal would clip it.
+   */
+  void put(char c, Color color) {
+    if (c == '\n') {
+      cursorX = 0;
+      cursorY++;
+      return;
+    }
+    if (cursorX < width && cursorY < height) {
+      characters[cursorY * width + cursorX] = c;
+      colors[cursorY * width + cursorX] = color;
+    }
+    cursorX++;
+  }
+
+  /* The color of a blank cell isn't visible, so blanks are equal whatever their color. */
+  boolean cellEquals(FrameBuffer other, int index) {
+    return characters[index] == other.characters[index]
+        && (characters[index] == BLANK || colors[index] == other.colors[index]);
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getCellCount() {
+    return characters.length;
+  }
+
+  char getCharacter(int index) {
+    return characters[index];
+  }
+
+  Color getColor(int index) {
+    return colors[index];
+  }
+
+  int getCursorX() {
+    return cursorX;
+  }
+
+  int getCursorY() {
+    return cursorY;
+  }
+}
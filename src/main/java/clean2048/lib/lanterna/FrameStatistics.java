@@ -0,0 +1,4 @@
+package clean2048.lib.lanterna;
+
+/* The amount of output it took to draw a single frame. */
+public record FrameStatistics(long bytes, long escapeSequences) {}
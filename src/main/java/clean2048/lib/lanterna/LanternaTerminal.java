@@ -6,27 +6,63 @@ import static com.googlecode.lanterna.TextColor.ANSI.CYAN;
 import static com.googlecode.lanterna.TextColor.ANSI.RED;
 
 import clean2048.view.Color;
+import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import com.googlecode.lanterna.terminal.TerminalFactory;
 import com.googlecode.lanterna.terminal.TerminalResizeListener;
 import java.io.IOException;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Optional;
 
+/*
+A thin wrapper around the Lanterna terminal which prints colored text line by line.
+
+Printing between beginFrame and endFrame doesn't go to the terminal straight away. Instead,
+it is drawn into a back buffer, and endFrame only sends the cells which differ from the last
+frame shown on the screen. A screen which gets redrawn often but changes little (like the game
+grid after a move) then only costs a few bytes of output per frame. The last frame is forgotten,
+and the next one is drawn in full, whenever the screen gets cleared, printed to outside of
+a frame or resized.
+
+All text goes through a ColorRunWriter, which only changes the color when it actually differs
+and sends consecutive text of one color as a single string. The output itself is counted,
+so we can tell how many bytes and escape sequences each frame took.
+*/
 public class LanternaTerminal {
+  private static final long INPUT_POLL_INTERVAL_MILLIS = 5;
   private final TerminalFactory defaultTerminalFactory;
+  private final CountingOutputStream output = new CountingOutputStream(System.out);
   private com.googlecode.lanterna.terminal.Terminal terminal = null;
+  private ColorRunWriter writer;
+
+  // Querying the size may need a round trip to the terminal, so we remember it and let
+  // the terminal tell us when it changes. This listener is registered before any other,
+  // so the other resize listeners already see the new size.
+  private volatile TerminalSize terminalSize;
+
+  private FrameBuffer backBuffer;
+  private FrameBuffer frontBuffer;
+  private boolean isDrawingFrame;
+  private long frameStartBytes;
+  private long frameStartEscapeSequences;
+  private FrameStatistics lastFrameStatistics = new FrameStatistics(0, 0);
 
   public LanternaTerminal() {
-    this.defaultTerminalFactory = new DefaultTerminalFactory();
+    this.defaultTerminalFactory =
+        new DefaultTerminalFactory(output, System.in, Charset.defaultCharset());
     startDisplay();
   }
 
   private void startDisplay() {
     try {
       terminal = defaultTerminalFactory.createTerminal();
+      writer = new ColorRunWriter(terminal);
+      terminalSize = terminal.getTerminalSize();
+      terminal.addResizeListener((resizedTerminal, newSize) -> terminalSize = newSize);
       terminal.setCursorVisible(false);
       terminal.clearScreen();
     } catch (IOException e) {
@@ -51,8 +87,69 @@ public class LanternaTerminal {
     };
   }
 
+  public void beginFrame() throws IOException {
+    TerminalSize size = terminalSize;
+    if (backBuffer == null || !backBuffer.hasSize(size.getColumns(), size.getRows())) {
+      backBuffer = new FrameBuffer(size.getColumns(), size.getRows());
+      frontBuffer = null;
+    } else {
+      backBuffer.clear();
+    }
+    isDrawingFrame = true;
+    writer.flush();
+    frameStartBytes = output.getBytes();
+    frameStartEscapeSequences = output.getEscapeSequences();
+  }
+
+  /* Sends the differences between the new frame and the one on the screen, leaving the cursor
+   * where the printing stopped. The cursor is only moved when the changed cells aren't
+   * contiguous, so runs of changed cells are written as whole strings.
+   */
+  public void endFrame() throws IOException {
+    isDrawingFrame = false;
+    int width = backBuffer.getWidth();
+    if (frontBuffer == null) {
+      terminal.clearScreen();
+      frontBuffer = new FrameBuffer(width, backBuffer.getCellCount() / width);
+    }
+
+    int cursorIndex = -1;
+    for (int index = 0; index < backBuffer.getCellCount(); index++) {
+      if (backBuffer.cellEquals(frontBuffer, index)) {
+        continue;
+      }
+      if (index != cursorIndex) {
+        writer.flush();
+        terminal.setCursorPosition(index % width, index / width);
+      }
+      writer.write(backBuffer.getCharacter(index), translateColor(backBuffer.getColor(index)));
+      // Terminals differ in where they leave the cursor after writing to the last column.
+      cursorIndex = ((index + 1) % width == 0) ? -1 : index + 1;
+    }
+
+    FrameBuffer shownFrame = backBuffer;
+    backBuffer = frontBuffer;
+    frontBuffer = shownFrame;
+    writer.flush();
+    terminal.setCursorPosition(frontBuffer.getCursorX(), frontBuffer.getCursorY());
+    terminal.flush();
+    lastFrameStatistics =
+        new FrameStatistics(
+            output.getBytes() - frameStartBytes,
+            output.getEscapeSequences() - frameStartEscapeSequences);
+  }
+
+  public FrameStatistics getLastFrameStatistics() {
+    return lastFrameStatistics;
+  }
+
   public void resetCursorPosition() throws IOException {
-    terminal.setCursorPosition(0, 0);
+    if (isDrawingFrame) {
+      backBuffer.setCursorPosition(0, 0);
+    } else {
+      writer.flush();
+      terminal.setCursorPosition(0, 0);
+    }
   }
 
   public void printLine(String line) throws IOException {
@@ -73,8 +170,14 @@ public class LanternaTerminal {
   }
 
   public void printString(String string, Color color) throws IOException {
-    terminal.setForegroundColor(translateColor(color));
-    terminal.putString(string);
+    if (isDrawingFrame) {
+      for (int i = 0; i < string.length(); i++) {
+        backBuffer.put(string.charAt(i), color);
+      }
+      return;
+    }
+    frontBuffer = null;
+    writer.write(string, translateColor(color));
   }
 
   public void printCharacter(char c) throws IOException {
@@ -82,8 +185,12 @@ public class LanternaTerminal {
   }
 
   public void printCharacter(char c, Color color) throws IOException {
-    terminal.setForegroundColor(translateColor(color));
-    terminal.putCharacter(c);
+    if (isDrawingFrame) {
+      backBuffer.put(c, color);
+      return;
+    }
+    frontBuffer = null;
+    writer.write(c, translateColor(color));
   }
 
   public void printLineCentered(String line) throws IOException {
@@ -117,38 +224,76 @@ public class LanternaTerminal {
   }
 
   private String getPaddingString(int length) {
-    return IntStream.range(0, length).mapToObj(i -> " ").collect(Collectors.joining(""));
+    return " ".repeat(Math.max(0, length));
   }
 
   public void flushChanges() throws IOException {
+    writer.flush();
     terminal.flush();
   }
 
   public KeyType getUserInput() throws IOException {
+    flushChanges();
     return terminal.readInput().getKeyType();
   }
 
+  public KeyStroke readKeyStroke() throws IOException {
+    flushChanges();
+    return terminal.readInput();
+  }
+
+  /* Returns the next key stroke without waiting for one. Unlike the blocking reads it
+   * doesn't flush pending output, so it can be called from another thread than the one
+   * drawing the screen.
+   */
+  public Optional<KeyStroke> pollKeyStroke() throws IOException {
+    return Optional.ofNullable(terminal.pollInput());
+  }
+
+  /* Waits at most the given time for a key stroke. Lanterna can only block on input
+   * indefinitely, so the terminal is polled at a short interval until a key arrives.
+   */
+  public Optional<KeyStroke> pollKeyStroke(Duration timeout)
+      throws IOException, InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (true) {
+      Optional<KeyStroke> key = pollKeyStroke();
+      if (key.isPresent() || System.nanoTime() >= deadline) {
+        return key;
+      }
+      Thread.sleep(INPUT_POLL_INTERVAL_MILLIS);
+    }
+  }
+
   public Character readCharacter() throws IOException {
+    flushChanges();
     return terminal.readInput().getCharacter();
   }
 
   public int getTerminalWidth() throws IOException {
-    return terminal.getTerminalSize().getColumns();
+    return terminalSize.getColumns();
   }
 
   public int getTerminalHeight() throws IOException {
-    return terminal.getTerminalSize().getRows();
+    return terminalSize.getRows();
   }
 
   public void addResizeListener(TerminalResizeListener listener) {
     terminal.addResizeListener(listener);
   }
 
+  public void removeResizeListener(TerminalResizeListener listener) {
+    terminal.removeResizeListener(listener);
+  }
+
   public void setCursorVisible(boolean isVisible) throws IOException {
+    writer.flush();
     terminal.setCursorVisible(isVisible);
   }
 
   public void clearScreen() throws IOException {
+    frontBuffer = null;
+    writer.flush();
     terminal.clearScreen();
   }
 }
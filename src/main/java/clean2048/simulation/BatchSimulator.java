@@ -0,0 +1,125 @@
+package clean2048.simulation;
+
+import clean2048.engine.Engine;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Plays many games without the terminal UI, using a move policy in place of the player.
+It is meant for load-testing engine changes: the report gives the throughput of the engine
+and the distribution of the results, which shouldn't change unless the rules did.
+
+Games are split recursively into fork/join tasks down to a single game each, so that
+idle workers can steal work from busy ones. Since games vary a lot in length, this keeps
+all cores busy until the very end of the batch. Each task owns a SplittableRandom split
+off from its parent when the task is created, so no random state is shared between
+threads, and a batch with a given seed always plays out the same games.
+*/
+public class BatchSimulator {
+  private static final int DEFAULT_DIMENSION = 4;
+  private static final MovePolicy DEFAULT_POLICY = MovePolicy.RANDOM;
+  private static final String USAGE =
+      "Usage: simulate <number of games> [random|corner-first|greedy] [dimension] [seed]";
+
+  private final int dimension;
+  private final MovePolicy policy;
+  private final ForkJoinPool pool;
+
+  public BatchSimulator(int dimension, MovePolicy policy, ForkJoinPool pool) {
+    this.dimension = dimension;
+    this.policy = policy;
+    this.pool = pool;
+  }
+
+  public static void main(String[] args) {
+    int games;
+    MovePolicy policy;
+    int dimension;
+    long seed;
+    try {
+      games = Integer.parseInt(args[0]);
+      policy = (args.length > 1) ? MovePolicy.fromName(args[1]) : DEFAULT_POLICY;
+      dimension = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_DIMENSION;
+      seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+      if (games <= 0 || dimension <= 0) {
+        throw new IllegalArgumentException(
+            "The number of games and the dimension must be positive");
+      }
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      System.out.println(USAGE);
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try {
+      BatchSimulator simulator = new BatchSimulator(dimension, policy, pool);
+      System.out.println(
+          "Playing %d games on a %dx%d board with the %s policy using %d threads (seed %d)"
+              .formatted(games, dimension, dimension, policy, pool.getParallelism(), seed));
+      System.out.println(simulator.run(games, seed).format());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public SimulationReport run(int games, long seed) {
+    GameResult[] results = new GameResult[games];
+    long start = System.nanoTime();
+    if (games > 0) {
+      pool.invoke(new PlayGames(results, 0, games, new SplittableRandom(seed)));
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    return SimulationReport.of(Arrays.asList(results), elapsedNanos);
+  }
+
+  GameResult playGame(SplittableRandom random) {
+    Engine engine = Engine.forDimension(dimension, random.split());
+    engine.startGame();
+    int moves = 0;
+    while (!engine.isGameOver()) {
+      engine.takeTurn(policy.chooseMove(engine, random));
+      moves++;
+    }
+    return new GameResult(engine.getScore(), getHighestTile(engine.getSimplifiedGrid()), moves);
+  }
+
+  private static int getHighestTile(int[][] grid) {
+    int highestTile = 0;
+    for (int[] row : grid) {
+      for (int tile : row) {
+        highestTile = Math.max(highestTile, tile);
+      }
+    }
+    return highestTile;
+  }
+
+  record GameResult(int score, int highestTile, int moves) {}
+
+  private class PlayGames extends RecursiveAction {
+    private final GameResult[] results;
+    private final int from;
+    private final int to;
+    private final SplittableRandom random;
+
+    PlayGames(GameResult[] results, int from, int to, SplittableRandom random) {
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.random = random;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        results[from] = playGame(random);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(
+          new PlayGames(results, from, middle, random.split()),
+          new PlayGames(results, middle, to, random));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package clean2048.simulation;
+
+import clean2048.controller.Direction;
+import clean2048.engine.Engine;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/*
+Strategies used to pick moves when games are played without a human at the keyboard.
+A policy only ever returns a move that changes the state of the board, so that every move
+counted by the simulator corresponds to an actual turn taken by the engine.
+*/
+public enum MovePolicy {
+  RANDOM {
+    @Override
+    Direction chooseMove(Engine engine, RandomGenerator random) {
+      Set<Direction> legalMoves = engine.legalMoves();
+      int selected = random.nextInt(legalMoves.size());
+      for (Direction direction : legalMoves) {
+        if (selected-- == 0) {
+          return direction;
+        }
+      }
+      throw new IllegalStateException("No legal move available");
+    }
+  },
+  /* Keeps the largest tiles in the bottom-left corner by preferring moves towards it
+   * and only moving up when nothing else is possible.
+   */
+  CORNER_FIRST {
+    @Override
+    Direction chooseMove(Engine engine, RandomGenerator random) {
+      Set<Direction> legalMoves = engine.legalMoves();
+      for (Direction direction : CORNER_PREFERENCE) {
+        if (legalMoves.contains(direction)) {
+          return direction;
+        }
+      }
+      throw new IllegalStateException("No legal move available");
+    }
+  },
+  /* Picks the move which gains the most points right away. Ties are broken in the same
+   * order as CORNER_FIRST, so that the board doesn't get scattered by equal-valued moves.
+   */
+  GREEDY {
+    @Override
+    Direction chooseMove(Engine engine, RandomGenerator random) {
+      int[][] grid = engine.getSimplifiedGrid();
+      Direction bestMove = null;
+      int bestGain = ILLEGAL_MOVE;
+      for (Direction direction : CORNER_PREFERENCE) {
+        int gain = previewMove(grid, direction);
+        if (gain > bestGain) {
+          bestGain = gain;
+          bestMove = direction;
+        }
+      }
+      if (bestMove == null) {
+        throw new IllegalStateException("No legal move available");
+      }
+      return bestMove;
+    }
+  };
+
+  private static final int ILLEGAL_MOVE = -1;
+  private static final Direction[] CORNER_PREFERENCE = {
+    Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.UP
+  };
+
+  /* Returns a move that changes the state of the engine's board. Must only be called
+   * when the game is not over yet.
+   */
+  abstract Direction chooseMove(Engine engine, RandomGenerator random);
+
+  public static MovePolicy fromName(String name) {
+    return valueOf(name.toUpperCase().replace('-', '_'));
+  }
+
+  /* Returns the score that shifting the grid in the given direction would earn,
+   * or ILLEGAL_MOVE if no tile would move. The merging rules are the same as
+   * in GameEngine.mergeLeft, applied along the direction of the shift.
+   */
+  static int previewMove(int[][] grid, Direction direction) {
+    int dimension = grid.length;
+    int gain = 0;
+    boolean changed = false;
+    for (int line = 0; line < dimension; line++) {
+      int target = 0;
+      int mergeableValue = 0;
+      for (int i = 0; i < dimension; i++) {
+        int value = getValueAlongLine(grid, direction, line, i);
+        if (value == 0) {
+          continue;
+        }
+        if (value == mergeableValue) {
+          gain += 2 * value;
+          mergeableValue = 0;
+          changed = true;
+        } else {
+          changed |= target != i;
+          mergeableValue = value;
+          target++;
+        }
+      }
+    }
+    return changed ? gain : ILLEGAL_MOVE;
+  }
+
+  /* Returns the i-th tile of the given row/column counting from the edge
+   * that the tiles are pushed towards.
+   */
+  private static int getValueAlongLine(int[][] grid, Direction direction, int line, int i) {
+    int last = grid.length - 1;
+    return switch (direction) {
+      case LEFT -> grid[line][i];
+      case RIGHT -> grid[line][last - i];
+      case UP -> grid[i][line];
+      case DOWN -> grid[last - i][line];
+    };
+  }
+}
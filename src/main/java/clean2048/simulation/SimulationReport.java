@@ -0,0 +1,73 @@
+package clean2048.simulation;
+
+import clean2048.simulation.BatchSimulator.GameResult;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/* Aggregate statistics of a batch of simulated games. */
+public record SimulationReport(
+    int games,
+    long elapsedNanos,
+    long totalMoves,
+    int[] sortedScores,
+    SortedMap<Integer, Integer> highestTileHistogram) {
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double[] REPORTED_PERCENTILES = {0, 10, 25, 50, 75, 90, 99, 100};
+  private static final int HISTOGRAM_BAR_WIDTH = 50;
+
+  static SimulationReport of(List<GameResult> results, long elapsedNanos) {
+    int[] scores = results.stream().mapToInt(GameResult::score).sorted().toArray();
+    long totalMoves = results.stream().mapToLong(GameResult::moves).sum();
+    SortedMap<Integer, Integer> histogram = new TreeMap<>();
+    for (GameResult result : results) {
+      histogram.merge(result.highestTile(), 1, Integer::sum);
+    }
+    return new SimulationReport(results.size(), elapsedNanos, totalMoves, scores, histogram);
+  }
+
+  public double gamesPerSecond() {
+    return games * NANOS_PER_SECOND / elapsedNanos;
+  }
+
+  public double movesPerSecond() {
+    return totalMoves * NANOS_PER_SECOND / elapsedNanos;
+  }
+
+  public double averageScore() {
+    return Arrays.stream(sortedScores).average().orElse(0);
+  }
+
+  /* Nearest-rank percentile of the final scores, percentile is in the range [0, 100]. */
+  public int scorePercentile(double percentile) {
+    if (sortedScores.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sortedScores.length);
+    return sortedScores[Math.max(rank - 1, 0)];
+  }
+
+  public String format() {
+    StringBuilder report = new StringBuilder();
+    report.append(
+        "Played %d games (%d moves) in %.3f s%n"
+            .formatted(games, totalMoves, elapsedNanos / NANOS_PER_SECOND));
+    report.append("%.1f games/s, %.1f moves/s%n".formatted(gamesPerSecond(), movesPerSecond()));
+    report.append("%nScore (average %.1f)%n".formatted(averageScore()));
+    for (double percentile : REPORTED_PERCENTILES) {
+      report.append("  p%-3.0f %10d%n".formatted(percentile, scorePercentile(percentile)));
+    }
+    report.append("%nHighest tile reached%n".formatted());
+    for (Map.Entry<Integer, Integer> entry : highestTileHistogram.entrySet()) {
+      int count = entry.getValue();
+      int barLength = (int) Math.ceil((double) HISTOGRAM_BAR_WIDTH * count / games);
+      report.append(
+          "  %6d %8d %6.2f%% %s%n"
+              .formatted(
+                  entry.getKey(), count, 100.0 * count / games, "#".repeat(barLength)));
+    }
+    return report.toString();
+  }
+}
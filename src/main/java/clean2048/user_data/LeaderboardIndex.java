@@ -0,0 +1,232 @@
+package clean2048.user_data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SplittableRandom;
+
+/*
+The users of the leaderboard in the order of their places: the highest score first, and users
+with the same score by their user names. Places start at 1.
+
+The users are kept in a treap, a binary search tree which is balanced by random priorities,
+in which every node also knows the size of its subtree. Finding the user at a place or the place
+of a user walks down a single path of the tree, so both take O(log n). A range of k places is
+read by an in-order walk starting at its first place, which takes O(log n + k).
+
+Every node keeps its own copy of the score it was sorted by, so a user whose score has changed
+is still found and can be put again with the new score.
+*/
+public class LeaderboardIndex {
+  private final Map<String, Node> nodes = new HashMap<>();
+  private final SplittableRandom random = new SplittableRandom();
+  private Node root;
+  private int modificationCount;
+
+  public LeaderboardIndex() {}
+
+  public LeaderboardIndex(Map<String, User> users) {
+    users.values().forEach(this::put);
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  /* Changes with every put and remove, so a view can tell whether what it has shown is stale. */
+  public int getModificationCount() {
+    return modificationCount;
+  }
+
+  /* Adds the user, or moves them to the place of their current score. */
+  void put(User user) {
+    remove(user.userName);
+    Node node = new Node(user, random.nextInt());
+    nodes.put(user.userName, node);
+    root = insert(root, node);
+    modificationCount++;
+  }
+
+  void remove(String userName) {
+    Node node = nodes.remove(userName);
+    if (node != null) {
+      root = remove(root, node);
+      modificationCount++;
+    }
+  }
+
+  public OptionalInt getPlace(String userName) {
+    Node node = nodes.get(userName);
+    if (node == null) {
+      return OptionalInt.empty();
+    }
+    int place = 0;
+    Node tree = root;
+    while (tree != node) {
+      if (precedes(node, tree)) {
+        tree = tree.left;
+      } else {
+        place += size(tree.left) + 1;
+        tree = tree.right;
+      }
+    }
+    return OptionalInt.of(place + size(node.left) + 1);
+  }
+
+  public Optional<User> getUserAt(int place) {
+    List<User> users = getRange(place, 1);
+    return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+  }
+
+  public List<User> getTop(int count) {
+    return getRange(1, count);
+  }
+
+  /* The users at the places firstPlace, firstPlace + 1, ... as long as there are any. */
+  public List<User> getRange(int firstPlace, int count) {
+    List<User> users = new ArrayList<>(Math.max(0, Math.min(count, size())));
+    if (firstPlace < 1 || firstPlace > size() || count <= 0) {
+      return users;
+    }
+    // The path to the first place. Every node on it where the path turns left follows that place.
+    Deque<Node> successors = new ArrayDeque<>();
+    int index = firstPlace - 1;
+    Node tree = root;
+    while (tree != null) {
+      int leftSize = size(tree.left);
+      if (index < leftSize) {
+        successors.push(tree);
+        tree = tree.left;
+      } else if (index == leftSize) {
+        successors.push(tree);
+        break;
+      } else {
+        index -= leftSize + 1;
+        tree = tree.right;
+      }
+    }
+    while (!successors.isEmpty() && users.size() < count) {
+      Node node = successors.pop();
+      users.add(node.user);
+      for (Node next = node.right; next != null; next = next.left) {
+        successors.push(next);
+      }
+    }
+    return users;
+  }
+
+  /* The user together with up to radius users on either side of them. */
+  public List<User> getWindowAround(String userName, int radius) {
+    OptionalInt place = getPlace(userName);
+    if (place.isEmpty()) {
+      return List.of();
+    }
+    int firstPlace = Math.max(1, place.getAsInt() - radius);
+    return getRange(firstPlace, place.getAsInt() + radius - firstPlace + 1);
+  }
+
+  private static Node insert(Node tree, Node node) {
+    if (tree == null) {
+      return node;
+    }
+    if (precedes(node, tree)) {
+      tree.left = insert(tree.left, node);
+      if (tree.left.priority > tree.priority) {
+        tree = rotateRight(tree);
+      }
+    } else {
+      tree.right = insert(tree.right, node);
+      if (tree.right.priority > tree.priority) {
+        tree = rotateLeft(tree);
+      }
+    }
+    updateSize(tree);
+    return tree;
+  }
+
+  private static Node remove(Node tree, Node node) {
+    if (tree == node) {
+      return merge(tree.left, tree.right);
+    }
+    if (precedes(node, tree)) {
+      tree.left = remove(tree.left, node);
+    } else {
+      tree.right = remove(tree.right, node);
+    }
+    updateSize(tree);
+    return tree;
+  }
+
+  /* Joins two trees, where every node of the first one precedes every node of the second one. */
+  private static Node merge(Node first, Node second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority > second.priority) {
+      first.right = merge(first.right, second);
+      updateSize(first);
+      return first;
+    }
+    second.left = merge(first, second.left);
+    updateSize(second);
+    return second;
+  }
+
+  private static Node rotateRight(Node tree) {
+    Node left = tree.left;
+    tree.left = left.right;
+    updateSize(tree);
+    left.right = tree;
+    updateSize(left);
+    return left;
+  }
+
+  private static Node rotateLeft(Node tree) {
+    Node right = tree.right;
+    tree.right = right.left;
+    updateSize(tree);
+    right.left = tree;
+    updateSize(right);
+    return right;
+  }
+
+  private static boolean precedes(Node node, Node other) {
+    if (node.highScore != other.highScore) {
+      return node.highScore > other.highScore;
+    }
+    return node.userName.compareTo(other.userName) < 0;
+  }
+
+  private static int size(Node node) {
+    return (node == null) ? 0 : node.size;
+  }
+
+  private static void updateSize(Node node) {
+    node.size = size(node.left) + size(node.right) + 1;
+  }
+
+  private static final class Node {
+    private final User user;
+    private final String userName;
+    private final int highScore;
+    private final int priority;
+    private Node left;
+    private Node right;
+    private int size = 1;
+
+    private Node(User user, int priority) {
+      this.user = user;
+      this.userName = user.userName;
+      this.highScore = user.highScore;
+      this.priority = priority;
+    }
+  }
+}
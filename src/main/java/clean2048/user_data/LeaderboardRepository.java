@@ -0,0 +1,114 @@
+package clean2048.user_data;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+The leaderboard shared by everything that shows or changes it during a run of the game.
+
+The leaderboard is read from the store once and kept in memory. Before every use the repository
+compares the change count of the store with the one it last saw, and only reads it again if
+another process has changed it in the meantime. Every change is passed on to the store as
+a change of that single user, instead of writing the whole leaderboard.
+
+Next to the users keyed by their names the repository keeps them ordered by their places in a
+LeaderboardIndex, which is updated together with every change instead of being sorted again.
+*/
+public class LeaderboardRepository {
+  private final ScoreStore store;
+  private Map<String, User> users;
+  private LeaderboardIndex ranking;
+  private long loadedChangeCount;
+
+  public LeaderboardRepository(ScoreStore store) {
+    this.store = store;
+  }
+
+  /* The returned map must not be modified, changes go through the methods below. */
+  public synchronized Map<String, User> getUsers() throws IOException {
+    refreshIfChanged();
+    return Collections.unmodifiableMap(users);
+  }
+
+  /* The users in the order of their places, which must only be changed through this class. */
+  public synchronized LeaderboardIndex getRanking() throws IOException {
+    refreshIfChanged();
+    return ranking;
+  }
+
+  /* New users are always accepted, since they are registered by their first score. */
+  public synchronized boolean verifyUser(String userName, String password) throws IOException {
+    refreshIfChanged();
+    User user = users.get(userName);
+    return user == null || Objects.equals(user.password, password);
+  }
+
+  /* Adds a new user, or raises the high score of an existing one. */
+  public synchronized void updateLeaderboard(String userName, String password, int score)
+      throws IOException {
+    refreshIfChanged();
+    User user = users.get(userName);
+    if (user != null && score <= user.highScore) {
+      return;
+    }
+    store.updateLeaderboard(userName, password, score);
+    if (user == null) {
+      user = new User(userName, password, score);
+      users.put(userName, user);
+    } else {
+      user.highScore = score;
+    }
+    ranking.put(user);
+    noticeOwnChange();
+  }
+
+  public synchronized void deleteUser(String userName) throws IOException {
+    refreshIfChanged();
+    if (!users.containsKey(userName)) {
+      return;
+    }
+    store.deleteUser(userName);
+    users.remove(userName);
+    ranking.remove(userName);
+    noticeOwnChange();
+  }
+
+  public synchronized void renameUser(String userName, String newUserName) throws IOException {
+    refreshIfChanged();
+    if (!users.containsKey(userName) || userName.equals(newUserName)) {
+      return;
+    }
+    store.renameUser(userName, newUserName);
+    User user = users.remove(userName);
+    ranking.remove(userName);
+    user.userName = newUserName;
+    users.put(newUserName, user);
+    ranking.put(user);
+    noticeOwnChange();
+  }
+
+  private void refreshIfChanged() throws IOException {
+    long changeCount = store.getChangeCount();
+    if (users == null || changeCount != loadedChangeCount) {
+      Map<String, User> storedUsers = store.readUserData();
+      users = (storedUsers == null) ? new HashMap<>() : new HashMap<>(storedUsers);
+      ranking = new LeaderboardIndex(users);
+      loadedChangeCount = changeCount;
+    }
+  }
+
+  /* Any count other than the one for the change just made means someone else has changed
+   * the leaderboard as well, and it is read again on its next use.
+   */
+  private void noticeOwnChange() throws IOException {
+    long changeCount = store.getChangeCount();
+    if (changeCount == loadedChangeCount + 1) {
+      loadedChangeCount = changeCount;
+    } else {
+      users = null;
+    }
+  }
+}
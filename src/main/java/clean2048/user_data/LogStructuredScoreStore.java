@@ -0,0 +1,613 @@
+package clean2048.user_data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+A leaderboard kept as an append-only log, so that saving a score costs the same however many
+users there are. The whole leaderboard is held in memory, and every change is appended to
+the newest log segment as a single record:
+- the length of the payload and its CRC32 checksum (an int each),
+- the payload: the record type, the high score, the user name and the password.
+
+On startup the leaderboard is rebuilt from the snapshot and the segments written after it.
+A record cut short by a crash fails its checksum, and replaying its segment stops there.
+Nothing is appended after such a record, since that would hide everything behind it;
+a new segment is started instead.
+
+Several games can use the same directory at once. Every read and change holds a lock on
+the directory's lock file, and first replays whatever the other stores have appended since
+they last looked, so all of them append to the same newest segment in turn. FileLocks are
+held on behalf of the whole JVM, so stores within one process also take turns on a monitor
+per directory.
+
+Once the segments written since the last snapshot take up more space than the snapshot
+itself, or there are many of them, a new segment is started and a background thread merges
+the old snapshot with the closed segments into a new snapshot. Compaction only rewrites
+the leaderboard after at least as much has been appended, so its cost per saved score stays
+constant on average. A separate lock file lets only one store compact at a time. It reads
+the closed segments without holding the directory lock, since nobody appends to them any
+more, and only takes it to put the new snapshot in place and delete the segments it covers.
+The snapshot records the generation of the last segment it covers, so segments left behind
+by a compaction which didn't finish are skipped, and deleted later.
+*/
+public class LogStructuredScoreStore implements ScoreStore, Closeable {
+  public static final String SNAPSHOT_FILE_NAME = "user-scores.snapshot";
+  public static final String SEGMENT_FILE_PREFIX = "user-scores.log.";
+  static final String LOCK_FILE_NAME = "user-scores.lock";
+  static final String COMPACTION_LOCK_FILE_NAME = "user-scores.compaction.lock";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final int SNAPSHOT_MAGIC = 0x32303438;
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+  private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+  // Two strings of at most 65535 bytes each, plus the fixed fields.
+  private static final int MAX_PAYLOAD_BYTES = 2 * (Short.BYTES + 0xFFFF) + 16;
+  private static final long DEFAULT_MIN_COMPACTION_BYTES = 1 << 20;
+  private static final int MAX_UNCOMPACTED_SEGMENTS = 16;
+  private static final Map<Path, Object> DIRECTORY_MONITORS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final long minCompactionBytes;
+  private final Object directoryMonitor;
+  private final FileChannel lockChannel;
+  private final Map<String, User> users = new HashMap<>();
+  // The bytes of valid records read so far from each segment the snapshot doesn't cover.
+  private final TreeMap<Long, Long> segmentBytes = new TreeMap<>();
+  private final ExecutorService compactor;
+  // The generation covered by the snapshot the users were loaded from, -1 before loading.
+  private long coveredGeneration = -1;
+  private long snapshotBytes;
+  private long changeCount;
+  private boolean isCompacting;
+
+  public LogStructuredScoreStore(Path directory) throws IOException {
+    this(directory, DEFAULT_MIN_COMPACTION_BYTES);
+  }
+
+  LogStructuredScoreStore(Path directory, long minCompactionBytes) throws IOException {
+    this.directory = directory;
+    this.minCompactionBytes = minCompactionBytes;
+    Files.createDirectories(directory);
+    directoryMonitor =
+        DIRECTORY_MONITORS.computeIfAbsent(
+            directory.toAbsolutePath().normalize(), path -> new Object());
+    lockChannel =
+        FileChannel.open(
+            directory.resolve(LOCK_FILE_NAME),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+    compactor =
+        Executors.newSingleThreadExecutor(
+            task -> {
+              Thread thread = new Thread(task, "score-compaction");
+              thread.setDaemon(true);
+              return thread;
+            });
+    synchronized (this) {
+      withDirectoryLock(
+          () -> {
+            compactIfNeeded();
+            return null;
+          });
+    }
+  }
+
+  /* Opens the store in the game data directory, next to the JSON leaderboard. */
+  public static LogStructuredScoreStore openDefault() throws IOException {
+    return open(UserScoreStorage.getGameDataHome());
+  }
+
+  /* The first time, takes over the users of the JSON leaderboard in the same directory, where
+   * earlier versions of the game saved the scores.
+   */
+  static LogStructuredScoreStore open(Path directory) throws IOException {
+    LogStructuredScoreStore store = new LogStructuredScoreStore(directory);
+    Path jsonFile = directory.resolve(UserScoreStorage.USER_SCORE_STORAGE_FILE_NAME);
+    if (Files.exists(jsonFile)) {
+      try {
+        store.importUsers(new UserScoreStorage(jsonFile).readUserData());
+      } catch (IOException e) {
+        store.close();
+        throw e;
+      }
+    }
+    return store;
+  }
+
+  /* Does nothing once anything has been saved in the store, even if every user has been
+   * deleted since.
+   */
+  private synchronized void importUsers(Map<String, User> importedUsers) throws IOException {
+    withDirectoryLock(
+        () -> {
+          boolean isEmpty =
+              coveredGeneration == 0
+                  && segmentBytes.values().stream().allMatch(bytes -> bytes == 0);
+          if (isEmpty) {
+            writeChanges(importedUsers);
+          }
+          return null;
+        });
+  }
+
+  @Override
+  public synchronized Map<String, User> readUserData() throws IOException {
+    return withDirectoryLock(
+        () -> {
+          Map<String, User> copy = new HashMap<>();
+          for (User user : users.values()) {
+            copy.put(user.userName, new User(user.userName, user.password, user.highScore));
+          }
+          return copy;
+        });
+  }
+
+  /* Only the users which differ from the current leaderboard get a record. */
+  @Override
+  public synchronized void writeUserData(Map<String, User> newUsers) throws IOException {
+    withDirectoryLock(
+        () -> {
+          writeChanges(newUsers);
+          return null;
+        });
+  }
+
+  /* Runs under the directory lock. */
+  private void writeChanges(Map<String, User> newUsers) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    List<User> changedUsers = new ArrayList<>();
+    List<String> deletedUsers = new ArrayList<>();
+    for (String userName : users.keySet()) {
+      if (!newUsers.containsKey(userName)) {
+        records.write(encodeRecord(DELETE, new User(userName, null, 0)));
+        deletedUsers.add(userName);
+      }
+    }
+    for (Map.Entry<String, User> entry : newUsers.entrySet()) {
+      User user = entry.getValue();
+      User stored = new User(entry.getKey(), user.password, user.highScore);
+      if (!stored.equals(users.get(entry.getKey()))) {
+        records.write(encodeRecord(PUT, stored));
+        changedUsers.add(stored);
+      }
+    }
+    if (records.size() > 0) {
+      append(records.toByteArray());
+      deletedUsers.forEach(users::remove);
+      changedUsers.forEach(user -> users.put(user.userName, user));
+      changeCount++;
+    }
+  }
+
+  @Override
+  public synchronized void updateLeaderboard(String userName, String password, int score)
+      throws IOException {
+    withDirectoryLock(
+        () -> {
+          User existing = users.get(userName);
+          if (existing != null && score <= existing.highScore) {
+            return null;
+          }
+          User updated =
+              new User(userName, (existing == null) ? password : existing.password, score);
+          append(encodeRecord(PUT, updated));
+          users.put(userName, updated);
+          changeCount++;
+          return null;
+        });
+  }
+
+  @Override
+  public synchronized void deleteUser(String userName) throws IOException {
+    withDirectoryLock(
+        () -> {
+          if (users.containsKey(userName)) {
+            append(encodeRecord(DELETE, new User(userName, null, 0)));
+            users.remove(userName);
+            changeCount++;
+          }
+          return null;
+        });
+  }
+
+  /* The user is put under the new name before the old name is deleted, so a crash between
+   * the two records can't lose them.
+   */
+  @Override
+  public synchronized void renameUser(String userName, String newUserName) throws IOException {
+    withDirectoryLock(
+        () -> {
+          User user = users.get(userName);
+          if (user == null || userName.equals(newUserName)) {
+            return null;
+          }
+          User renamed = new User(newUserName, user.password, user.highScore);
+          ByteArrayOutputStream records = new ByteArrayOutputStream();
+          records.write(encodeRecord(PUT, renamed));
+          records.write(encodeRecord(DELETE, user));
+          append(records.toByteArray());
+          users.remove(userName);
+          users.put(newUserName, renamed);
+          changeCount++;
+          return null;
+        });
+  }
+
+  @Override
+  public synchronized boolean verifyUser(String userName, String password) throws IOException {
+    return withDirectoryLock(
+        () -> {
+          User user = users.get(userName);
+          return user == null || Objects.equals(user.password, password);
+        });
+  }
+
+  @Override
+  public synchronized long getChangeCount() throws IOException {
+    return withDirectoryLock(() -> changeCount);
+  }
+
+  /* Waits for a compaction in progress to finish. */
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      lockChannel.close();
+    }
+  }
+
+  private interface LockedAction<T> {
+    T run() throws IOException;
+  }
+
+  /* Runs the action while no other store uses the directory, once this store has caught up
+   * with what the others have written. Callers hold the monitor of this store.
+   */
+  private <T> T withDirectoryLock(LockedAction<T> action) throws IOException {
+    synchronized (directoryMonitor) {
+      try (FileLock lock = lockChannel.lock()) {
+        catchUp();
+        return action.run();
+      }
+    }
+  }
+
+  /* Reloads everything after another store has put a new snapshot in place, and otherwise
+   * only replays the records appended since this store last looked.
+   */
+  private void catchUp() throws IOException {
+    if (readSnapshotGeneration() != coveredGeneration) {
+      users.clear();
+      segmentBytes.clear();
+      coveredGeneration = readSnapshot(users);
+      changeCount++;
+      Path snapshot = directory.resolve(SNAPSHOT_FILE_NAME);
+      snapshotBytes = Files.exists(snapshot) ? Files.size(snapshot) : 0;
+    }
+    for (long segmentGeneration : listSegmentGenerations()) {
+      Path segmentFile = getSegmentFile(segmentGeneration);
+      if (segmentGeneration <= coveredGeneration) {
+        // Left behind by a compaction which didn't get to delete it.
+        Files.deleteIfExists(segmentFile);
+        continue;
+      }
+      long readBytes = segmentBytes.getOrDefault(segmentGeneration, 0L);
+      if (Files.size(segmentFile) > readBytes) {
+        long replayedBytes = replaySegment(segmentFile, readBytes, users);
+        if (replayedBytes > 0) {
+          readBytes += replayedBytes;
+          changeCount++;
+        }
+      }
+      segmentBytes.put(segmentGeneration, readBytes);
+    }
+  }
+
+  /* Runs under the directory lock. The records are written before the in-memory state
+   * changes, so the state never gets ahead of what has been saved.
+   */
+  private void append(byte[] records) throws IOException {
+    long head = segmentBytes.isEmpty() ? coveredGeneration + 1 : segmentBytes.lastKey();
+    Path headFile = getSegmentFile(head);
+    if (Files.exists(headFile) && Files.size(headFile) != segmentBytes.get(head)) {
+      // The newest segment ends with a damaged record.
+      head++;
+    }
+    try (FileChannel segment =
+        FileChannel.open(
+            getSegmentFile(head),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)) {
+      ByteBuffer buffer = ByteBuffer.wrap(records);
+      while (buffer.hasRemaining()) {
+        segment.write(buffer);
+      }
+    }
+    segmentBytes.merge(head, (long) records.length, Long::sum);
+    compactIfNeeded();
+  }
+
+  /* Runs under the directory lock. */
+  private void compactIfNeeded() throws IOException {
+    long uncompactedBytes = 0;
+    for (long bytes : segmentBytes.values()) {
+      uncompactedBytes += bytes;
+    }
+    boolean hasGrown = uncompactedBytes > Math.max(minCompactionBytes, snapshotBytes);
+    if (isCompacting
+        || segmentBytes.isEmpty()
+        || !(hasGrown || segmentBytes.size() > MAX_UNCOMPACTED_SEGMENTS)) {
+      return;
+    }
+    // From now on every store appends to the new segment, so the ones being compacted
+    // are no longer written to.
+    long lastGeneration = segmentBytes.lastKey();
+    FileChannel.open(
+            getSegmentFile(lastGeneration + 1),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE)
+        .close();
+    segmentBytes.put(lastGeneration + 1, 0L);
+    isCompacting = true;
+    compactor.execute(() -> compact(lastGeneration));
+  }
+
+  /* Runs on the background thread, so the game can keep saving scores in the meantime. */
+  private void compact(long lastGeneration) {
+    try (FileChannel claimChannel =
+            FileChannel.open(
+                directory.resolve(COMPACTION_LOCK_FILE_NAME),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock claim = tryLock(claimChannel)) {
+      if (claim == null) {
+        // Another store is compacting. A later change will start another compaction
+        // if one is still needed.
+        return;
+      }
+      Map<String, User> compacted = new HashMap<>();
+      long snapshotGeneration = readSnapshot(compacted);
+      if (snapshotGeneration >= lastGeneration) {
+        return;
+      }
+      for (long segmentGeneration : listSegmentGenerations()) {
+        if (segmentGeneration > snapshotGeneration && segmentGeneration <= lastGeneration) {
+          replaySegment(getSegmentFile(segmentGeneration), 0, compacted);
+        }
+      }
+      Path temporary = writeTemporarySnapshot(compacted, lastGeneration);
+      synchronized (this) {
+        withDirectoryLock(
+            () -> {
+              replaceSnapshot(temporary, lastGeneration);
+              return null;
+            });
+      }
+    } catch (IOException e) {
+      // The segments are still in place, so nothing is lost and the next compaction
+      // will include them again.
+    } finally {
+      synchronized (this) {
+        isCompacting = false;
+      }
+    }
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Held by another store in this process.
+      return null;
+    }
+  }
+
+  /* Runs under the directory lock, right after catching up. This store has then seen every
+   * record of the segments the snapshot covers, so it keeps its state instead of reloading.
+   */
+  private void replaceSnapshot(Path temporary, long lastGeneration) throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE_NAME);
+    Files.move(
+        temporary,
+        snapshot,
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    Map<Long, Long> coveredSegments = segmentBytes.headMap(lastGeneration, true);
+    for (long segmentGeneration : coveredSegments.keySet()) {
+      Files.deleteIfExists(getSegmentFile(segmentGeneration));
+    }
+    coveredSegments.clear();
+    coveredGeneration = lastGeneration;
+    snapshotBytes = Files.size(snapshot);
+  }
+
+  /* Returns 0 without a snapshot. */
+  private long readSnapshotGeneration() throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE_NAME);
+    if (!Files.exists(snapshot)) {
+      return 0;
+    }
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshot))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a score snapshot: " + snapshot);
+      }
+      return in.readLong();
+    }
+  }
+
+  /* Returns the generation of the last segment the snapshot covers, or 0 without a snapshot. */
+  private long readSnapshot(Map<String, User> target) throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE_NAME);
+    if (!Files.exists(snapshot)) {
+      return 0;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a score snapshot: " + snapshot);
+      }
+      long coveredGeneration = in.readLong();
+      applyRecords(in, target);
+      return coveredGeneration;
+    }
+  }
+
+  /* The snapshot is synced to disk before it replaces the old one, since the segments
+   * it covers are deleted right afterwards.
+   */
+  private Path writeTemporarySnapshot(Map<String, User> snapshotUsers, long coveredGeneration)
+      throws IOException {
+    Path temporary = directory.resolve(SNAPSHOT_FILE_NAME + TEMPORARY_SUFFIX);
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(coveredGeneration);
+      for (User user : snapshotUsers.values()) {
+        out.write(encodeRecord(PUT, user));
+      }
+      out.flush();
+      channel.force(true);
+    }
+    return temporary;
+  }
+
+  /* Returns the number of bytes of valid records after the given offset. */
+  private static long replaySegment(Path segmentFile, long offset, Map<String, User> target)
+      throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile)))) {
+      in.skipNBytes(offset);
+      return applyRecords(in, target);
+    }
+  }
+
+  /* Applies records until the end of the stream, or until one that is incomplete or damaged.
+   * Returns the number of bytes of the records applied.
+   */
+  private static long applyRecords(DataInputStream in, Map<String, User> target)
+      throws IOException {
+    byte[] payload = new byte[MAX_PAYLOAD_BYTES];
+    CRC32 checksum = new CRC32();
+    long appliedBytes = 0;
+    while (true) {
+      int length;
+      int expectedChecksum;
+      try {
+        length = in.readInt();
+        expectedChecksum = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+          return appliedBytes;
+        }
+        in.readFully(payload, 0, length);
+      } catch (EOFException e) {
+        return appliedBytes;
+      }
+      checksum.reset();
+      checksum.update(payload, 0, length);
+      if ((int) checksum.getValue() != expectedChecksum) {
+        return appliedBytes;
+      }
+      applyRecord(new DataInputStream(new ByteArrayInputStream(payload, 0, length)), target);
+      appliedBytes += RECORD_HEADER_BYTES + length;
+    }
+  }
+
+  private static void applyRecord(DataInputStream record, Map<String, User> target)
+      throws IOException {
+    byte type = record.readByte();
+    int highScore = record.readInt();
+    String userName = record.readUTF();
+    String password = record.readBoolean() ? record.readUTF() : null;
+    if (type == DELETE) {
+      target.remove(userName);
+    } else {
+      target.put(userName, new User(userName, password, highScore));
+    }
+  }
+
+  private static byte[] encodeRecord(byte type, User user) throws IOException {
+    ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(payloadBytes);
+    payload.writeByte(type);
+    payload.writeInt(user.highScore);
+    payload.writeUTF(user.userName);
+    payload.writeBoolean(user.password != null);
+    if (user.password != null) {
+      payload.writeUTF(user.password);
+    }
+    byte[] bytes = payloadBytes.toByteArray();
+    CRC32 checksum = new CRC32();
+    checksum.update(bytes);
+
+    ByteArrayOutputStream recordBytes =
+        new ByteArrayOutputStream(RECORD_HEADER_BYTES + bytes.length);
+    DataOutputStream record = new DataOutputStream(recordBytes);
+    record.writeInt(bytes.length);
+    record.writeInt((int) checksum.getValue());
+    record.write(bytes);
+    return recordBytes.toByteArray();
+  }
+
+  private List<Long> listSegmentGenerations() throws IOException {
+    List<Long> generations = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(SEGMENT_FILE_PREFIX)) {
+          try {
+            generations.add(Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length())));
+          } catch (NumberFormatException e) {
+            // Not one of ours.
+          }
+        }
+      }
+    }
+    generations.sort(null);
+    return generations;
+  }
+
+  private Path getSegmentFile(long segmentGeneration) {
+    return directory.resolve(SEGMENT_FILE_PREFIX + segmentGeneration);
+  }
+}
@@ -0,0 +1,33 @@
+package clean2048.user_data;
+
+import java.io.IOException;
+import java.util.Map;
+
+/* Where the leaderboard is kept. Users are keyed by their user name. */
+public interface ScoreStore {
+  /* Returns a copy which the caller is free to modify. */
+  Map<String, User> readUserData() throws IOException;
+
+  /* Replaces the whole leaderboard. */
+  void writeUserData(Map<String, User> users) throws IOException;
+
+  /* Adds a new user, or raises the high score of an existing one. A score lower than the
+   * user's high score doesn't change anything.
+   */
+  void updateLeaderboard(String userName, String password, int score) throws IOException;
+
+  void deleteUser(String userName) throws IOException;
+
+  /* Replaces a user who already has the new name. */
+  void renameUser(String userName, String newUserName) throws IOException;
+
+  /* New users are always accepted, since they are registered by their first score. */
+  boolean verifyUser(String userName, String password) throws IOException;
+
+  /* Grows with every change of the leaderboard, whether it was made through this store or by
+   * another process. A change made through the store adds exactly one, so whoever made it can
+   * tell whether anything else has changed in the meantime. Checking it is much cheaper than
+   * reading the leaderboard.
+   */
+  long getChangeCount() throws IOException;
+}
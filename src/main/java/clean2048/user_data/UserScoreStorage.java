@@ -1,21 +1,46 @@
 package clean2048.user_data;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.io.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
-public class UserScoreStorage {
+/*
+The leaderboard as a JSON object which maps user names to users, in the format Gson gives
+a Map<String, User>.
+
+The file is read and written one user at a time with Gson's streaming JsonReader and
+JsonWriter over buffered file channels. The whole document is never held as a String, so
+writing needs no more memory than the buffers on top of the users themselves, and reading
+skips the reflection Gson would use to fill in every User.
+
+Changes of other processes are noticed by comparing the modification time and the size of the
+file with the ones after the last change this storage made or noticed, which is a single file
+system call instead of reading the whole file.
+*/
+public class UserScoreStorage implements ScoreStore {
   public static final String XDG_DATA_HOME = "XDG_DATA_HOME";
   public static final String HOME = "HOME";
   public static final String GAME_DIRECTORY_NAME = "2048";
   public static final String USER_SCORE_STORAGE_FILE_NAME = "user-scores";
+  private static final String USER_NAME_FIELD = "userName";
+  private static final String PASSWORD_FIELD = "password";
+  private static final String HIGH_SCORE_FIELD = "highScore";
   public final Path userScoreStorageFilePath;
+  private FileTime seenModificationTime;
+  private long seenSize;
+  private long changeCount;
 
   public UserScoreStorage() throws IOException {
     this.userScoreStorageFilePath =
@@ -24,6 +49,12 @@ public class UserScoreStorage {
     initializeLeaderboardFile();
   }
 
+  /* Keeps the scores in the given file instead of the one in the game's data directory. */
+  UserScoreStorage(Path userScoreStorageFilePath) throws IOException {
+    this.userScoreStorageFilePath = userScoreStorageFilePath;
+    initializeLeaderboardFile();
+  }
+
   public void initialiseDataDir() throws IOException {
     Path gameDataHome = getGameDataHome();
     if (!Files.exists(gameDataHome)) {
@@ -38,25 +69,139 @@ public class UserScoreStorage {
     }
   }
 
-  public void updateLeaderboard(String username, String password, int score) throws IOException {
+  @Override
+  public synchronized void updateLeaderboard(String username, String password, int score)
+      throws IOException {
+    noticeChangesOfOthers();
     Map<String, User> userMap = readUserData();
-    if (userMap.containsKey(username) && score > userMap.get(username).highScore) {
+    if (!userMap.containsKey(username)) {
+      userMap.put(username, new User(username, password, score));
+    } else if (score > userMap.get(username).highScore) {
       userMap.get(username).highScore = score;
     } else {
-      userMap.put(username, new User(username, password, score));
+      return;
     }
     writeUserData(userMap);
   }
 
-  public void writeUserData(Map<String, User> users) throws IOException {
-    Files.writeString(userScoreStorageFilePath, new Gson().toJson(users));
+  @Override
+  public synchronized void deleteUser(String userName) throws IOException {
+    noticeChangesOfOthers();
+    Map<String, User> users = readUserData();
+    if (users.remove(userName) != null) {
+      writeUserData(users);
+    }
+  }
+
+  @Override
+  public synchronized void renameUser(String userName, String newUserName) throws IOException {
+    noticeChangesOfOthers();
+    Map<String, User> users = readUserData();
+    if (userName.equals(newUserName) || !users.containsKey(userName)) {
+      return;
+    }
+    User user = users.remove(userName);
+    user.userName = newUserName;
+    users.put(newUserName, user);
+    writeUserData(users);
+  }
+
+  @Override
+  public synchronized void writeUserData(Map<String, User> users) throws IOException {
+    try (BufferedWriter output =
+            Files.newBufferedWriter(userScoreStorageFilePath, StandardCharsets.UTF_8);
+        JsonWriter writer = new JsonWriter(output)) {
+      writer.beginObject();
+      for (Map.Entry<String, User> entry : users.entrySet()) {
+        writer.name(entry.getKey());
+        writeUser(writer, entry.getValue());
+      }
+      writer.endObject();
+    }
+    changeCount++;
+    remember(readFileAttributes());
+  }
+
+  @Override
+  public synchronized long getChangeCount() throws IOException {
+    noticeChangesOfOthers();
+    return changeCount;
   }
 
-  public Map<String, User> readUserData() throws FileNotFoundException {
-    BufferedReader br =
-        new BufferedReader(
-            new InputStreamReader(new FileInputStream(userScoreStorageFilePath.toString())));
-    return new Gson().fromJson(br, new TypeToken<Map<String, User>>() {}.getType());
+  private void noticeChangesOfOthers() throws IOException {
+    BasicFileAttributes attributes = readFileAttributes();
+    if (!attributes.lastModifiedTime().equals(seenModificationTime)
+        || attributes.size() != seenSize) {
+      changeCount++;
+      remember(attributes);
+    }
+  }
+
+  private void remember(BasicFileAttributes attributes) {
+    seenModificationTime = attributes.lastModifiedTime();
+    seenSize = attributes.size();
+  }
+
+  private BasicFileAttributes readFileAttributes() throws IOException {
+    return Files.readAttributes(userScoreStorageFilePath, BasicFileAttributes.class);
+  }
+
+  /* Like Gson, leaves out the fields which are null. */
+  private static void writeUser(JsonWriter writer, User user) throws IOException {
+    writer.beginObject();
+    if (user.userName != null) {
+      writer.name(USER_NAME_FIELD).value(user.userName);
+    }
+    if (user.password != null) {
+      writer.name(PASSWORD_FIELD).value(user.password);
+    }
+    writer.name(HIGH_SCORE_FIELD).value(user.highScore);
+    writer.endObject();
+  }
+
+  /* An empty file, or one holding just null, is an empty leaderboard. */
+  @Override
+  public Map<String, User> readUserData() throws IOException {
+    Map<String, User> users = new HashMap<>();
+    if (Files.size(userScoreStorageFilePath) == 0) {
+      return users;
+    }
+    try (BufferedReader input =
+            Files.newBufferedReader(userScoreStorageFilePath, StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(input)) {
+      // Gson reads leniently as well, so files which it accepted are still read.
+      reader.setLenient(true);
+      if (reader.peek() == JsonToken.NULL) {
+        return users;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String userName = reader.nextName();
+        users.put(userName, readUser(reader));
+      }
+      reader.endObject();
+    }
+    return users;
+  }
+
+  private static User readUser(JsonReader reader) throws IOException {
+    User user = new User(null, null, 0);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String field = reader.nextName();
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+        continue;
+      }
+      switch (field) {
+        case USER_NAME_FIELD -> user.userName = reader.nextString();
+        case PASSWORD_FIELD -> user.password = reader.nextString();
+        case HIGH_SCORE_FIELD -> user.highScore = reader.nextInt();
+        default -> reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return user;
   }
 
   public static Path getGameDataHome() {
@@ -74,7 +219,8 @@ public class UserScoreStorage {
     return "%s/.local/share".formatted(userHome);
   }
 
-  public boolean verifyUser(String userName, String password) throws FileNotFoundException {
+  @Override
+  public boolean verifyUser(String userName, String password) throws IOException {
     Map<String, User> users = readUserData();
     return  !users.containsKey(userName) || Objects.equals(users.get(userName).password, password);
   }
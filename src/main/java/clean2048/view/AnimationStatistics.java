@@ -0,0 +1,11 @@
+package clean2048.view;
+
+/* The frame times an animation actually achieved. Frames are skipped when drawing falls
+ * behind the frame budget, and the animation is cut short when a newer state arrives.
+ */
+public record AnimationStatistics(
+    int framesDrawn,
+    int framesSkipped,
+    long averageFrameNanos,
+    long maxFrameNanos,
+    boolean isCutShort) {}
@@ -0,0 +1,95 @@
+package clean2048.view;
+
+import java.time.Duration;
+import java.util.function.IntPredicate;
+
+/*
+Plays the frames of an animation at a fixed interval, which is also the time budget
+of a single frame.
+
+Frame k is due in the k-th interval after the animation has started. When drawing a frame
+takes longer than its budget, the frames whose intervals have already passed are skipped
+instead of drawing every frame late, so an animation never takes much longer than planned.
+*/
+class FrameScheduler {
+  static final Clock SYSTEM_CLOCK =
+      new Clock() {
+        @Override
+        public long nanoTime() {
+          return System.nanoTime();
+        }
+
+        @Override
+        public boolean sleepUntil(long time) {
+          long nanos = time - System.nanoTime();
+          if (nanos <= 0) {
+            return true;
+          }
+          try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+            return true;
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        }
+      };
+
+  private final long frameBudgetNanos;
+  private final Clock clock;
+
+  FrameScheduler(Duration frameBudget) {
+    this(frameBudget, SYSTEM_CLOCK);
+  }
+
+  FrameScheduler(Duration frameBudget, Clock clock) {
+    this.frameBudgetNanos = frameBudget.toNanos();
+    this.clock = clock;
+  }
+
+  /* Calls drawFrame with the frames 1 to frameCount in order, except for the skipped ones.
+   * Stops as soon as drawFrame returns false, i.e. when the animation is no longer wanted.
+   */
+  AnimationStatistics play(int frameCount, IntPredicate drawFrame) {
+    long start = clock.nanoTime();
+    int framesDrawn = 0;
+    int framesSkipped = 0;
+    long totalFrameNanos = 0;
+    long maxFrameNanos = 0;
+    boolean isCutShort = false;
+
+    for (int frame = 1; frame <= frameCount; frame++) {
+      long frameStart = clock.nanoTime();
+      int dueFrame = (int) Math.min(frameCount, (frameStart - start) / frameBudgetNanos + 1);
+      if (dueFrame > frame) {
+        framesSkipped += dueFrame - frame;
+        frame = dueFrame;
+      }
+      if (!drawFrame.test(frame)) {
+        isCutShort = true;
+        break;
+      }
+      long frameNanos = clock.nanoTime() - frameStart;
+      framesDrawn++;
+      totalFrameNanos += frameNanos;
+      maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+
+      if (frame < frameCount && !clock.sleepUntil(start + frame * frameBudgetNanos)) {
+        isCutShort = true;
+        break;
+      }
+    }
+
+    long averageFrameNanos = (framesDrawn == 0) ? 0 : totalFrameNanos / framesDrawn;
+    return new AnimationStatistics(
+        framesDrawn, framesSkipped, averageFrameNanos, maxFrameNanos, isCutShort);
+  }
+
+  /* Where the time comes from, so that tests can decide how long drawing and waiting take. */
+  interface Clock {
+    long nanoTime();
+
+    /* Returns false if the thread has been interrupted while waiting. */
+    boolean sleepUntil(long time);
+  }
+}
@@ -0,0 +1,156 @@
+package clean2048.view;
+
+import clean2048.controller.Direction;
+import java.util.Optional;
+import lombok.Getter;
+
+/*
+Everything about the placement and the look of the game screen which only depends on the size
+of the terminal and the dimension of the board: the margins, the border lines and the padded
+strings of the tiles and hints. TerminalGameView builds it once and reuses it for every frame
+until the terminal gets resized, so drawing a frame doesn't need to format any strings apart
+from the score.
+
+Boards which don't fit on the screen are shown through a viewport: only as many rows and
+columns as the terminal can hold are drawn, so the cost of a frame depends on the size of
+the terminal rather than on the size of the board. The optional minimap below the grid shows
+the whole board at a reduced scale, with one character per block of cells.
+*/
+class GameScreenLayout {
+  private static final int CELL_WIDTH = 4;
+  private static final int HINT_LINE_WIDTH = 16;
+  private static final int MAX_MINIMAP_COLUMNS = 32;
+  private static final int MAX_MINIMAP_ROWS = 8;
+  private static final int PLAIN_TEXT_LINE_COUNT = 2; // for displaying the score and the hint
+  private static final String SCORE_LABEL = "Score: ";
+  private static final String EMPTY_CELL = " ".repeat(CELL_WIDTH);
+
+  // Tiles are powers of two, so their strings can be looked up by the exponent.
+  private static final String[] TILE_STRINGS = new String[Integer.SIZE - 1];
+  private static final String[] HINT_STRINGS = new String[Direction.values().length];
+  private static final String NO_HINT = " ".repeat(HINT_LINE_WIDTH);
+  private static final char[] MINIMAP_CHARACTERS = new char[Integer.SIZE - 1];
+
+  static {
+    for (int exponent = 1; exponent < TILE_STRINGS.length; exponent++) {
+      TILE_STRINGS[exponent] = "%4s".formatted(1 << exponent);
+    }
+    // The exponent as a single digit in base 36, which covers every power of two an int holds.
+    MINIMAP_CHARACTERS[0] = '.';
+    for (int exponent = 1; exponent < MINIMAP_CHARACTERS.length; exponent++) {
+      MINIMAP_CHARACTERS[exponent] = Character.forDigit(exponent, Character.MAX_RADIX);
+    }
+    for (Direction direction : Direction.values()) {
+      HINT_STRINGS[direction.ordinal()] =
+          ("%-" + HINT_LINE_WIDTH + "s").formatted("Hint: " + direction.name().toLowerCase());
+    }
+  }
+
+  private final int terminalWidth;
+  private final int terminalHeight;
+  private final int dimension;
+  private final boolean isMinimapShown;
+  @Getter private final int visibleRows;
+  @Getter private final int visibleColumns;
+  @Getter private final int minimapRows;
+  @Getter private final int minimapColumns;
+  @Getter private final int topMargin;
+  @Getter private final String scoreLabel;
+  @Getter private final String horizontalLine;
+  @Getter private final String rowMargin;
+  @Getter private final String hintMargin;
+  @Getter private final String minimapMargin;
+
+  GameScreenLayout(int terminalWidth, int terminalHeight, int dimension, boolean isMinimapShown) {
+    this.terminalWidth = terminalWidth;
+    this.terminalHeight = terminalHeight;
+    this.dimension = dimension;
+    this.isMinimapShown = isMinimapShown;
+    this.minimapRows = isMinimapShown ? Math.min(dimension, MAX_MINIMAP_ROWS) : 0;
+    this.minimapColumns =
+        isMinimapShown ? Math.min(Math.min(dimension, MAX_MINIMAP_COLUMNS), terminalWidth) : 0;
+    // Every row of tiles takes up a line of its own and the border line below it.
+    int linesForGrid = terminalHeight - PLAIN_TEXT_LINE_COUNT - minimapRows - 1;
+    this.visibleRows = clamp(linesForGrid / 2, 1, dimension);
+    this.visibleColumns = clamp((terminalWidth - 1) / (CELL_WIDTH + 1), 1, dimension);
+    this.topMargin = getCenteringMargin(terminalHeight, calculateScreenHeight());
+    this.scoreLabel = getPadding(terminalWidth, SCORE_LABEL.length()) + SCORE_LABEL;
+    String line = "-".repeat((CELL_WIDTH + 1) * visibleColumns - 1);
+    this.horizontalLine = getPadding(terminalWidth, line.length()) + line;
+    this.rowMargin = getPadding(terminalWidth, calculateGridWidth(visibleColumns));
+    this.hintMargin = getPadding(terminalWidth, HINT_LINE_WIDTH);
+    this.minimapMargin = getPadding(terminalWidth, minimapColumns);
+  }
+
+  boolean matches(int width, int height, boolean isMinimapShown) {
+    return terminalWidth == width
+        && terminalHeight == height
+        && this.isMinimapShown == isMinimapShown;
+  }
+
+  /* The first row of the viewport, moved as little as needed to keep the viewport within
+   * the board.
+   */
+  int clampViewportRow(int row) {
+    return clamp(row, 0, dimension - visibleRows);
+  }
+
+  int clampViewportColumn(int column) {
+    return clamp(column, 0, dimension - visibleColumns);
+  }
+
+  /* Every row of the minimap stands for a block of rows of the board, and shows the one in
+   * the middle of it.
+   */
+  int getMinimapSampleRow(int minimapRow) {
+    return getBlockMiddle(minimapRow, minimapRows);
+  }
+
+  int getMinimapSampleColumn(int minimapColumn) {
+    return getBlockMiddle(minimapColumn, minimapColumns);
+  }
+
+  private int getBlockMiddle(int block, int blockCount) {
+    return (2 * block + 1) * dimension / (2 * blockCount);
+  }
+
+  static String getTileString(int tile) {
+    if (tile == 0) {
+      return EMPTY_CELL;
+    }
+    return (Integer.bitCount(tile) == 1)
+        ? TILE_STRINGS[Integer.numberOfTrailingZeros(tile)]
+        : "%4s".formatted(tile);
+  }
+
+  static char getMinimapCharacter(int tile) {
+    return MINIMAP_CHARACTERS[Integer.numberOfTrailingZeros(Math.max(tile, 1))];
+  }
+
+  /* Hints are padded to a fixed width so that a shorter text overwrites the previous one. */
+  static String getHintString(Optional<Direction> hint) {
+    return hint.map(direction -> HINT_STRINGS[direction.ordinal()]).orElse(NO_HINT);
+  }
+
+  private static int getCenteringMargin(int available, int used) {
+    return Math.max(0, (available - used) / 2);
+  }
+
+  private static String getPadding(int available, int used) {
+    return " ".repeat(getCenteringMargin(available, used));
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(value, max));
+  }
+
+  private static int calculateGridWidth(int columns) {
+    final int SEPARATOR_COUNT = columns + 1;
+    return CELL_WIDTH * columns + SEPARATOR_COUNT;
+  }
+
+  private int calculateScreenHeight() {
+    final int HORIZONTAL_BORDER_COUNT = visibleRows + 1;
+    return visibleRows + HORIZONTAL_BORDER_COUNT + PLAIN_TEXT_LINE_COUNT + minimapRows;
+  }
+}
@@ -1,6 +1,7 @@
 package clean2048.view;
 
 import clean2048.lib.lanterna.LanternaTerminal;
+import clean2048.user_data.LeaderboardIndex;
 import clean2048.user_data.User;
 import java.io.IOException;
 import java.util.*;
@@ -11,39 +12,59 @@ public class LeaderboardView {
   private static final String PLACE = "Place";
   private static final String USER_NAME = "User Name";
   private static final String SCORE = "Score";
+  // The places shown on either side of the player's place after a game.
+  private static final int SUMMARY_RADIUS = 5;
+  // The title, the header with its separator lines, the closing separator line and the footer.
+  private static final int PAGE_FRAME_LINES = 7;
   private final LanternaTerminal terminal;
 
+  // Only the rows on screen are looked at, so the columns are as wide as the widest entry seen
+  // so far. They never shrink, which keeps the table from jumping while paging through it.
+  private int placeColumnWidth = PLACE.length();
+  private int userNameColumnWidth = USER_NAME.length();
+  private int scoreColumnWidth = SCORE.length();
+  private LeaderboardPage page;
+
   public LeaderboardView(LanternaTerminal terminal) {
     this.terminal = terminal;
   }
 
-  public void printLeaderboard(Map<String, User> leaderboard) {
-    LeaderboardContents contents = assembleLeaderboardContents(leaderboard);
-    try {
-      printLeaderboardHeader(contents.leaderBoardHeader, contents.separatorLine);
-      for (String scoreRow : contents.scoreRows) {
-        terminal.printLineCentered(scoreRow);
-      }
-      terminal.printLineCentered(contents.separatorLine);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  /* Prints the places around the user's, or the top of the leaderboard if they aren't on it. */
+  public void printLeaderboard(LeaderboardIndex leaderboard, String userName) {
+    OptionalInt place = leaderboard.getPlace(userName);
+    int firstPlace = place.isPresent() ? Math.max(1, place.getAsInt() - SUMMARY_RADIUS) : 1;
+    printPage(leaderboard, firstPlace, 2 * SUMMARY_RADIUS + 1, place.orElse(0), Color.CYAN);
+  }
+
+  /* The number of rows a page may have when the given number of other lines share the screen. */
+  public int getRowsPerPage(int otherLines) throws IOException {
+    return Math.max(1, terminal.getTerminalHeight() - otherLines - PAGE_FRAME_LINES);
   }
 
-  public void printLeaderboardHighlightingRow(
-      Map<String, User> leaderboard, int highlightedRow, Color color) {
-    LeaderboardContents contents = assembleLeaderboardContents(leaderboard);
+  /* Prints up to rowCount places starting at firstPlace. Only the rows of the page are
+   * formatted, and they are reused while the same page of an unchanged leaderboard is printed
+   * again, e.g. when only the highlighted place has moved.
+   */
+  public void printPage(
+      LeaderboardIndex leaderboard,
+      int firstPlace,
+      int rowCount,
+      int highlightedPlace,
+      Color color) {
+    if (page == null || !page.shows(leaderboard, firstPlace, rowCount)) {
+      page = formatPage(leaderboard, firstPlace, rowCount);
+    }
     try {
-      printLeaderboardHeader(contents.leaderBoardHeader, contents.separatorLine);
-      for (int i = 0; i < contents.scoreRows.size(); i++) {
-        String scoreRow = contents.scoreRows.get(i);
-        if (i == highlightedRow) {
-          terminal.printLineCentered(scoreRow, color);
+      printLeaderboardHeader(page.header, page.separatorLine);
+      for (int row = 0; row < page.rows.size(); row++) {
+        if (firstPlace + row == highlightedPlace) {
+          terminal.printLineCentered(page.rows.get(row), color);
         } else {
-          terminal.printLineCentered(scoreRow);
+          terminal.printLineCentered(page.rows.get(row));
         }
       }
-      terminal.printLineCentered(contents.separatorLine);
+      terminal.printLineCentered(page.separatorLine);
+      terminal.printLineCentered(page.footer);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -58,38 +79,46 @@ public class LeaderboardView {
     terminal.printLineCentered(separatorLine);
   }
 
-
-  private LeaderboardContents assembleLeaderboardContents(Map<String, User> leaderboard) {
-    List<String> places =
-        IntStream.rangeClosed(1, leaderboard.size()).mapToObj(Integer::toString).toList();
-    List<String> scores =
-        leaderboard.values().stream().map(user -> user.highScore).map(Object::toString).toList();
-
-    int placeColumnWidth = getColumnWidth(PLACE, places);
-    int userNameColumnWidth = getColumnWidth(USER_NAME, leaderboard.keySet());
-    int scoreColumnWidth = getColumnWidth(SCORE, scores);
+  private LeaderboardPage formatPage(LeaderboardIndex leaderboard, int firstPlace, int rowCount) {
+    List<User> users = leaderboard.getRange(firstPlace, rowCount);
+    // The place is followed by a dot.
+    int lastPlaceWidth = Integer.toString(leaderboard.size()).length() + 1;
+    placeColumnWidth = Math.max(placeColumnWidth, lastPlaceWidth);
+    // Nobody has a higher score than the user in the first place.
+    leaderboard
+        .getUserAt(1)
+        .ifPresent(
+            top ->
+                scoreColumnWidth =
+                    Math.max(scoreColumnWidth, Integer.toString(top.highScore).length()));
+    for (User user : users) {
+      userNameColumnWidth = Math.max(userNameColumnWidth, user.userName.length());
+    }
 
     String leaderboardHeader =
         getCenteredLeaderboardHeader(placeColumnWidth, userNameColumnWidth, scoreColumnWidth);
-
     String separatorLine = getSeparatorLine(leaderboardHeader.length());
-
     String rowTemplate = getRowTemplate(placeColumnWidth, userNameColumnWidth, scoreColumnWidth);
-    List<User> users = new ArrayList<>(leaderboard.values().stream().toList());
-    Collections.sort(users);
-    List<String> scoreRows =
-        users.stream()
-            .map(
-                user ->
-                    rowTemplate.formatted(users.indexOf(user) + 1, user.userName, user.highScore))
-            .toList();
-
-    return new LeaderboardContents(leaderboardHeader, separatorLine, scoreRows);
-  }
-
-  private int getColumnWidth(String columnHeader, Collection<String> columnContents) {
-    int maxEntryWidth = Collections.max(columnContents.stream().map(String::length).toList());
-    return Math.max(columnHeader.length(), maxEntryWidth);
+    List<String> scoreRows = new ArrayList<>(users.size());
+    for (int row = 0; row < users.size(); row++) {
+      User user = users.get(row);
+      scoreRows.add(rowTemplate.formatted(firstPlace + row, user.userName, user.highScore));
+    }
+    String footer =
+        users.isEmpty()
+            ? "The leaderboard is empty."
+            : "Places %d-%d of %d"
+                .formatted(firstPlace, firstPlace + users.size() - 1, leaderboard.size());
+
+    return new LeaderboardPage(
+        leaderboard,
+        leaderboard.getModificationCount(),
+        firstPlace,
+        rowCount,
+        leaderboardHeader,
+        separatorLine,
+        scoreRows,
+        footer);
   }
 
   public String getRowTemplate(
@@ -146,6 +175,20 @@ public class LeaderboardView {
     return (columnWidth - s.length()) / 2;
   }
 
-  private record LeaderboardContents(
-      String leaderBoardHeader, String separatorLine, List<String> scoreRows) {}
+  private record LeaderboardPage(
+      LeaderboardIndex leaderboard,
+      int modificationCount,
+      int firstPlace,
+      int rowCount,
+      String header,
+      String separatorLine,
+      List<String> rows,
+      String footer) {
+    boolean shows(LeaderboardIndex leaderboard, int firstPlace, int rowCount) {
+      return this.leaderboard == leaderboard
+          && modificationCount == leaderboard.getModificationCount()
+          && this.firstPlace == firstPlace
+          && this.rowCount == rowCount;
+    }
+  }
 }
@@ -0,0 +1,128 @@
+package clean2048.view;
+
+import clean2048.engine.MoveDelta;
+
+/*
+Computes the boards shown between the state before a move and the state after it.
+
+Tiles can only be drawn in whole cells of the text grid, so a sliding tile advances
+cell by cell towards its destination. Tiles which don't move stay where they are, the two
+halves of a merge are shown separately until the last frame, and the spawned tile only
+appears in the final state, which is not part of the animation.
+
+Only the window of the board inside the viewport is animated. The slides which never pass
+through it are dropped up front, and every frame is drawn into the same window-sized array,
+so the cost of a frame depends on the size of the terminal rather than on the size
+of the board.
+*/
+class MoveAnimation {
+  private final int dimension;
+  private final int firstRow;
+  private final int firstColumn;
+  private final int rows;
+  private final int columns;
+
+  // The tiles which stay in place during the whole animation, indexed like the window.
+  private final int[][] stationaryTiles;
+  private final int[][] frameTiles;
+
+  // The slides which pass through the window, with cells numbered as in the move.
+  private final int[] slideFrom;
+  private final int[] slideTo;
+  private final int[] slideValue;
+  private int slideCount;
+
+  /* The final tiles are the window of the state after the move whose top left cell is
+   * at (firstRow, firstColumn) of the board.
+   */
+  MoveAnimation(MoveDelta move, int[][] finalTiles, int firstRow, int firstColumn) {
+    this.dimension = move.getDimension();
+    this.firstRow = firstRow;
+    this.firstColumn = firstColumn;
+    this.rows = finalTiles.length;
+    this.columns = finalTiles[0].length;
+    stationaryTiles = new int[rows][];
+    for (int y = 0; y < rows; y++) {
+      stationaryTiles[y] = finalTiles[y].clone();
+    }
+    frameTiles = new int[rows][columns];
+    if (move.hasSpawn()) {
+      setIfInside(stationaryTiles, move.getSpawnCell(), 0);
+    }
+
+    slideFrom = new int[move.getSlideCount()];
+    slideTo = new int[move.getSlideCount()];
+    slideValue = new int[move.getSlideCount()];
+    int[][] slidesInto = new int[rows][columns];
+    for (int slide = 0; slide < move.getSlideCount(); slide++) {
+      int from = move.getSlideFrom(slide);
+      int to = move.getSlideTo(slide);
+      if (isInside(to)) {
+        setIfInside(stationaryTiles, to, 0);
+        slidesInto[to / dimension - firstRow][to % dimension - firstColumn]++;
+      }
+      if (passesThroughWindow(from, to)) {
+        slideFrom[slideCount] = from;
+        slideTo[slideCount] = to;
+        slideValue[slideCount] = move.getSlideValue(slide);
+        slideCount++;
+      }
+    }
+    // A merged tile which only one half slid into was already there before the move.
+    for (int merge = 0; merge < move.getMergeCount(); merge++) {
+      int cell = move.getMergeCell(merge);
+      if (isInside(cell)) {
+        int halves = slidesInto[cell / dimension - firstRow][cell % dimension - firstColumn];
+        setIfInside(
+            stationaryTiles, cell, (halves == 1) ? move.getMergeValue(merge) / 2 : 0);
+      }
+    }
+  }
+
+  /* Returns the window for the given frame, where frame 0 is the state before the move
+   * and frame frameCount would be the state after it. The returned array is reused
+   * by the next call.
+   */
+  int[][] getFrame(int frame, int frameCount) {
+    for (int y = 0; y < rows; y++) {
+      System.arraycopy(stationaryTiles[y], 0, frameTiles[y], 0, columns);
+    }
+    double progress = (double) frame / frameCount;
+    for (int slide = 0; slide < slideCount; slide++) {
+      int from = slideFrom[slide];
+      int to = slideTo[slide];
+      int x = interpolate(from % dimension, to % dimension, progress);
+      int y = interpolate(from / dimension, to / dimension, progress);
+      setIfInside(frameTiles, y * dimension + x, slideValue[slide]);
+    }
+    return frameTiles;
+  }
+
+  /* Tiles only slide along a row or a column, so the path is a line between the two cells. */
+  private boolean passesThroughWindow(int from, int to) {
+    int fromY = from / dimension;
+    int toY = to / dimension;
+    int fromX = from % dimension;
+    int toX = to % dimension;
+    return Math.max(fromY, toY) >= firstRow
+        && Math.min(fromY, toY) < firstRow + rows
+        && Math.max(fromX, toX) >= firstColumn
+        && Math.min(fromX, toX) < firstColumn + columns;
+  }
+
+  private boolean isInside(int cell) {
+    int y = cell / dimension - firstRow;
+    int x = cell % dimension - firstColumn;
+    return y >= 0 && y < rows && x >= 0 && x < columns;
+  }
+
+  private void setIfInside(int[][] window, int cell, int tile) {
+    if (isInside(cell)) {
+      window[cell / dimension - firstRow][cell % dimension - firstColumn] = tile;
+    }
+  }
+
+  private static int interpolate(int from, int to, double progress) {
+    return from + (int) Math.round(progress * (to - from));
+  }
+}
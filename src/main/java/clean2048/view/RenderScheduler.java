@@ -0,0 +1,96 @@
+package clean2048.view;
+
+/*
+Draws the game screen on a thread of its own, so that neither the game nor the terminal's
+resize listener waits for the output to be written.
+
+Requests are merged rather than queued: however many times the state changes while a frame
+is being drawn, only the latest state is drawn next, and a full redraw (after a resize)
+also covers any repaint requested along with it.
+
+Once the game is over the screen belongs to the menus drawn by the game's own thread,
+so the scheduler is stopped, and requests arriving after that are ignored.
+*/
+class RenderScheduler {
+  private final Runnable repaint;
+  private final Runnable fullRedraw;
+  private final Thread thread;
+  private boolean repaintRequested;
+  private boolean fullRedrawRequested;
+  private boolean isRendering;
+  private boolean isStopped;
+
+  RenderScheduler(Runnable repaint, Runnable fullRedraw) {
+    this.repaint = repaint;
+    this.fullRedraw = fullRedraw;
+    thread = new Thread(this::renderRequests, "render");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void requestRepaint() {
+    if (isStopped) {
+      return;
+    }
+    repaintRequested = true;
+    notifyAll();
+  }
+
+  synchronized void requestFullRedraw() {
+    if (isStopped) {
+      return;
+    }
+    fullRedrawRequested = true;
+    notifyAll();
+  }
+
+  /* Waits until every request made so far has been drawn. The render thread only stops
+   * if drawing failed, in which case there is nothing left to wait for.
+   */
+  synchronized void awaitIdle() throws InterruptedException {
+    while (thread.isAlive() && (repaintRequested || fullRedrawRequested || isRendering)) {
+      wait();
+    }
+  }
+
+  /* Draws what has been requested so far, then stops the render thread for good. */
+  void stop() throws InterruptedException {
+    synchronized (this) {
+      awaitIdle();
+      isStopped = true;
+      notifyAll();
+    }
+    thread.join();
+  }
+
+  private void renderRequests() {
+    while (true) {
+      boolean redrawAll;
+      synchronized (this) {
+        try {
+          while (!repaintRequested && !fullRedrawRequested && !isStopped) {
+            wait();
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (isStopped) {
+          return;
+        }
+        redrawAll = fullRedrawRequested;
+        repaintRequested = false;
+        fullRedrawRequested = false;
+        isRendering = true;
+      }
+
+      try {
+        (redrawAll ? fullRedraw : repaint).run();
+      } finally {
+        synchronized (this) {
+          isRendering = false;
+          notifyAll();
+        }
+      }
+    }
+  }
+}
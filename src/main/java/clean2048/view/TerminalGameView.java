@@ -1,45 +1,235 @@
 package clean2048.view;
 
+import clean2048.controller.Direction;
+import clean2048.controller.ViewportListener;
+import clean2048.engine.Engine;
+import clean2048.engine.MoveDelta;
 import clean2048.lib.lanterna.LanternaTerminal;
+import clean2048.user_data.LeaderboardIndex;
+import clean2048.user_data.LeaderboardRepository;
 import clean2048.user_data.User;
-import clean2048.user_data.UserScoreStorage;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.input.KeyType;
 import com.googlecode.lanterna.terminal.TerminalResizeListener;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
-public class TerminalGameView {
+public class TerminalGameView implements ViewportListener {
+  // An animated move is drawn as a few frames in which the tiles slide by a cell at a time,
+  // followed by the final state. The whole animation takes about a tenth of a second.
+  private static final int ANIMATION_FRAMES = 4;
+  private static final Duration ANIMATION_FRAME_BUDGET = Duration.ofMillis(25);
+  // The guide above the leaderboard editor, and the menu printed below it once a user is chosen
+  // together with the line telling how the editing went.
+  private static final int EDITING_GUIDE_LINES = 4;
+  private static final int EDITING_MENU_LINES = 6;
+
   private final LanternaTerminal terminal;
   private final LeaderboardView leaderboardView;
+  private final LeaderboardRepository leaderboardRepository;
   private final int dimension;
 
-  // We maintain the score and the latest copy of the grid as fields because
-  // they are needed to redraw the screen on resize without
-  // asking the engine for the latest state of the game board.
+  // The game only changes the board while holding the engine's monitor. The render thread
+  // takes it just long enough to copy what a frame shows: the score, the tiles inside
+  // the viewport and the ones sampled by the minimap. A frame then costs as much as
+  // the terminal holds, however large the board is, and a pan or a resize can be drawn
+  // without waiting for the game to hand over the board again.
+  private Engine board;
   private int score;
-  private int[][] grid;
+  private int[][] shownTiles;
+  private int[][] minimapTiles;
+  // The cell of the board in the top left corner of shownTiles.
+  private int shownRow;
+  private int shownColumn;
+  private Optional<Direction> hint = Optional.empty();
+  private GameScreenLayout layout;
+  private final RenderScheduler renderScheduler;
+  private final RedrawOnResize redrawOnResize = new RedrawOnResize();
+
+  // The move still waiting to be animated, and a version of the state which tells
+  // an animation in progress that a newer state has arrived and it should snap to it.
+  private MoveDelta pendingMove;
+  private long stateVersion;
+  private final FrameScheduler frameScheduler = new FrameScheduler(ANIMATION_FRAME_BUDGET);
+
+  // The first row and column of the board shown on the screen. They are kept within the board
+  // when drawing, since the number of visible rows and columns changes with the terminal size.
+  private int viewportRow;
+  private int viewportColumn;
+  private boolean isMinimapShown;
 
   public TerminalGameView(
-      LanternaTerminal terminal, LeaderboardView leaderboardView, int dimension) {
+      LanternaTerminal terminal,
+      LeaderboardView leaderboardView,
+      LeaderboardRepository leaderboardRepository,
+      int dimension) {
     this.terminal = terminal;
     this.leaderboardView = leaderboardView;
+    this.leaderboardRepository = leaderboardRepository;
     this.dimension = dimension;
-    this.terminal.addResizeListener(new RedrawOnResize());
+    this.renderScheduler = new RenderScheduler(this::render, this::redraw);
+    this.terminal.addResizeListener(redrawOnResize);
+  }
+
+  /* Only schedules the drawing, which happens on the render thread. When the game updates
+   * the state faster than it can be drawn, the states in between are skipped.
+   *
+   * The game calls this while holding the engine's monitor, and holds it whenever it changes
+   * the engine, so that the state it hands over stays put until the render thread copies it.
+   */
+  public void updateDisplay(Engine engine) {
+    setState(engine, null);
+    renderScheduler.requestRepaint();
+  }
+
+  /* Like updateDisplay, but the tiles first slide into the places the given move took them.
+   * The animation is cut short as soon as a newer state arrives, which is then drawn instead.
+   */
+  public void animateMove(MoveDelta move, Engine engine) {
+    setState(engine, move);
+    renderScheduler.requestRepaint();
+  }
+
+  private synchronized void setState(Engine engine, MoveDelta move) {
+    board = engine;
+    pendingMove = move;
+    stateVersion++;
+  }
+
+  /* Runs on the render thread. The lock is only held while drawing a single frame,
+   * so that the game can hand over a newer state in the middle of an animation.
+   */
+  private void render() {
+    Engine engine;
+    synchronized (this) {
+      engine = board;
+    }
+    if (engine == null) {
+      return;
+    }
+    MoveAnimation animation = null;
+    long version;
+    synchronized (engine) {
+      synchronized (this) {
+        copyShownTiles(engine);
+        if (pendingMove != null) {
+          animation = new MoveAnimation(pendingMove, shownTiles, shownRow, shownColumn);
+          pendingMove = null;
+        }
+        version = stateVersion;
+      }
+    }
+    if (animation == null) {
+      synchronized (this) {
+        drawScreen(shownTiles);
+      }
+      return;
+    }
+    // The game may have moved on during the animation.
+    animate(animation, version);
+    draw();
+  }
+
+  /* Runs while the game can't change the board. Lays out the screen first, since that
+   * decides how much of the board is shown.
+   */
+  private void copyShownTiles(Engine engine) {
+    try {
+      updateLayout();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    int rows = layout.getVisibleRows();
+    int columns = layout.getVisibleColumns();
+    if (shownTiles == null || shownTiles.length != rows || shownTiles[0].length != columns) {
+      shownTiles = new int[rows][columns];
+    }
+    shownRow = viewportRow;
+    shownColumn = viewportColumn;
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < columns; x++) {
+        shownTiles[y][x] = engine.getTile(shownRow + y, shownColumn + x);
+      }
+    }
+    int minimapRows = layout.getMinimapRows();
+    int minimapColumns = layout.getMinimapColumns();
+    if (minimapTiles == null
+        || minimapTiles.length != minimapRows
+        || (minimapRows > 0 && minimapTiles[0].length != minimapColumns)) {
+      minimapTiles = new int[minimapRows][minimapColumns];
+    }
+    for (int minimapY = 0; minimapY < minimapRows; minimapY++) {
+      int y = layout.getMinimapSampleRow(minimapY);
+      for (int minimapX = 0; minimapX < minimapColumns; minimapX++) {
+        minimapTiles[minimapY][minimapX] =
+            engine.getTile(y, layout.getMinimapSampleColumn(minimapX));
+      }
+    }
+    score = engine.getScore();
+  }
+
+  private void animate(MoveAnimation animation, long version) {
+    frameScheduler.play(
+        ANIMATION_FRAMES - 1, frame -> drawAnimationFrame(animation, frame, version));
+  }
+
+  /* After a pan or a resize the animated window is no longer the one on the screen,
+   * so the animation stops and the current window gets drawn instead.
+   */
+  private synchronized boolean drawAnimationFrame(
+      MoveAnimation animation, int frame, long version) {
+    try {
+      if (stateVersion != version || !isShownWindowCurrent()) {
+        return false;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    drawScreen(animation.getFrame(frame, ANIMATION_FRAMES));
+    return true;
+  }
+
+  /* The fields are also written by the game and by the hint thread, so drawing holds
+   * the lock to see a consistent state. The engine's monitor is only held while copying,
+   * so the game doesn't wait for the frame to be written.
+   */
+  private void draw() {
+    Engine engine;
+    synchronized (this) {
+      engine = board;
+    }
+    if (engine == null) {
+      return;
+    }
+    synchronized (engine) {
+      synchronized (this) {
+        copyShownTiles(engine);
+      }
+    }
+    synchronized (this) {
+      drawScreen(shownTiles);
+    }
   }
 
-  public void updateDisplay(int score, int[][] grid) {
-    this.score = score;
-    this.grid = grid;
+  private boolean isShownWindowCurrent() throws IOException {
+    return layout.matches(
+            terminal.getTerminalWidth(), terminal.getTerminalHeight(), isMinimapShown)
+        && shownTiles.length == layout.getVisibleRows()
+        && shownRow == viewportRow
+        && shownColumn == viewportColumn;
+  }
 
+  private void drawScreen(int[][] tiles) {
     try {
+      terminal.beginFrame();
       terminal.resetCursorPosition();
       centerVertically();
       printScore();
-      printGrid();
-      terminal.flushChanges();
+      printGrid(tiles);
+      printHint();
+      printMinimap();
+      terminal.endFrame();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -66,64 +256,132 @@ public class TerminalGameView {
   }
 
   private void centerVertically() throws IOException {
-    int topMargin = terminal.getVerticalCenteringMargin(calculateGridHeight());
-    for (int i = 0; i < topMargin; i++) {
+    for (int i = 0; i < layout.getTopMargin(); i++) {
       terminal.printNewLine();
     }
   }
 
   private void printScore() throws IOException {
-    terminal.printStringCentered("Score: ");
+    terminal.printString(layout.getScoreLabel());
     terminal.printLine(String.valueOf(score), Color.CYAN);
   }
 
-  private void printGrid() throws IOException {
-    String line = getHorizontalLine(grid.length);
-    terminal.printLineCentered(line);
-    for (int[] row : grid) {
+  private void printGrid(int[][] tiles) throws IOException {
+    terminal.printLine(layout.getHorizontalLine());
+    for (int[] row : tiles) {
       printRow(row);
-      terminal.printLineCentered(line);
+      terminal.printLine(layout.getHorizontalLine());
     }
   }
 
-  private String getHorizontalLine(int dimension) {
-    return String.join("-", IntStream.range(0, dimension).mapToObj(i -> "----").toList());
+  private void printHint() throws IOException {
+    terminal.printString(layout.getHintMargin());
+    terminal.printLine(GameScreenLayout.getHintString(hint), Color.YELLOW);
   }
 
-  private void printRow(int[] row) throws IOException {
-    String margin =
-        IntStream.range(0, terminal.getHorizontalCenteringMargin(calculateGridWidth()))
-            .mapToObj(i -> " ")
-            .collect(Collectors.joining(""));
+  public void showHint(Direction direction) {
+    synchronized (this) {
+      hint = Optional.of(direction);
+    }
+    renderScheduler.requestRepaint();
+  }
 
-    terminal.printString(margin);
+  /* Pans by half the visible part of the board, so that some of it stays in view. */
+  @Override
+  public void onPan(Direction direction) {
+    synchronized (this) {
+      int rowStep = (layout == null) ? 1 : Math.max(1, layout.getVisibleRows() / 2);
+      int columnStep = (layout == null) ? 1 : Math.max(1, layout.getVisibleColumns() / 2);
+      switch (direction) {
+        case UP -> viewportRow -= rowStep;
+        case DOWN -> viewportRow += rowStep;
+        case LEFT -> viewportColumn -= columnStep;
+        case RIGHT -> viewportColumn += columnStep;
+      }
+      clampViewport();
+    }
+    renderScheduler.requestRepaint();
+  }
+
+  @Override
+  public void onMinimapToggled() {
+    synchronized (this) {
+      isMinimapShown = !isMinimapShown;
+    }
+    renderScheduler.requestRepaint();
+  }
+
+  /* Until the first layout the whole board counts as visible. */
+  private void clampViewport() {
+    viewportRow = (layout == null) ? 0 : layout.clampViewportRow(viewportRow);
+    viewportColumn = (layout == null) ? 0 : layout.clampViewportColumn(viewportColumn);
+  }
+
+  /* The hint disappears with the next redraw of the screen. */
+  public synchronized void clearHint() {
+    hint = Optional.empty();
+  }
+
+  private void printRow(int[] row) throws IOException {
+    terminal.printString(layout.getRowMargin());
     terminal.printCharacter('|');
     for (int tile : row) {
-      printTile(tile);
+      terminal.printString(GameScreenLayout.getTileString(tile), Color.getTileColor(tile));
       terminal.printCharacter('|');
     }
     terminal.printNewLine();
   }
 
-  private void printTile(int tile) throws IOException {
-    final String emptyCell = "    ";
-    String tileString = (tile == 0) ? emptyCell : "%4s".formatted(tile);
-    terminal.printString(tileString, Color.getTileColor(tile));
-  }
-
-  private int calculateGridWidth() {
-    final int CELL_WIDTH = 4;
-    final int SEPARATOR_COUNT = dimension + 1;
-    return CELL_WIDTH * dimension + SEPARATOR_COUNT;
+  /* Every character of the minimap stands for a block of cells and shows the tile in the
+   * middle of it, so drawing the minimap doesn't depend on the size of the board either.
+   * The part of the board inside the viewport is shown in color, the rest in grey.
+   */
+  private void printMinimap() throws IOException {
+    int rows = layout.getMinimapRows();
+    int columns = layout.getMinimapColumns();
+    int visibleRows = layout.getVisibleRows();
+    int visibleColumns = layout.getVisibleColumns();
+    for (int minimapY = 0; minimapY < rows; minimapY++) {
+      int y = layout.getMinimapSampleRow(minimapY);
+      boolean isRowVisible = y >= shownRow && y < shownRow + visibleRows;
+      terminal.printString(layout.getMinimapMargin());
+      for (int minimapX = 0; minimapX < columns; minimapX++) {
+        int x = layout.getMinimapSampleColumn(minimapX);
+        boolean isVisible = isRowVisible && x >= shownColumn && x < shownColumn + visibleColumns;
+        int tile = minimapTiles[minimapY][minimapX];
+        terminal.printCharacter(
+            GameScreenLayout.getMinimapCharacter(tile),
+            isVisible ? Color.getTileColor(tile) : Color.GREY);
+      }
+      terminal.printNewLine();
+    }
   }
 
-  private int calculateGridHeight() {
-    final int HORIZONTAL_BORDER_COUNT = dimension + 1;
-    final int PLAIN_TEXT_LINE_COUNT = 1; // for displaying the score
-    return dimension + HORIZONTAL_BORDER_COUNT + PLAIN_TEXT_LINE_COUNT;
+  /* The layout is rebuilt after a resize or when the minimap is toggled. Checking the size
+   * as well is cheap, since the terminal wrapper remembers it, and it covers a resize which
+   * happens before our listener has been registered.
+   */
+  private void updateLayout() throws IOException {
+    int width = terminal.getTerminalWidth();
+    int height = terminal.getTerminalHeight();
+    if (layout == null || !layout.matches(width, height, isMinimapShown)) {
+      layout = new GameScreenLayout(width, height, dimension, isMinimapShown);
+      clampViewport();
+    }
   }
 
+  /* Lets the render thread finish drawing the final state first, since the message
+   * is printed below it. From here on the menus and the leaderboard are printed by the game's
+   * thread, so the render thread is stopped and resizes no longer redraw the board, which
+   * would otherwise be drawn over them at the same time.
+   */
   public void printGameOverMessage() {
+    terminal.removeResizeListener(redrawOnResize);
+    try {
+      renderScheduler.stop();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
     try {
       terminal.printLine("");
       terminal.printLineCentered("Game Over!", Color.RED);
@@ -135,27 +393,33 @@ public class TerminalGameView {
   }
 
   public void editLeaderBoard() throws IOException {
-    UserScoreStorage storage = new UserScoreStorage();
-    Map<String, User> leaderboard = storage.readUserData();
+    LeaderboardIndex ranking = leaderboardRepository.getRanking();
+    Map<String, User> leaderboard = leaderboardRepository.getUsers();
     terminal.setCursorVisible(false);
     terminal.clearScreen();
-    terminal.flushChanges();
-    printEditingLeaderboardGuide();
-    leaderboardView.printLeaderboardHighlightingRow(leaderboard, 0, Color.CYAN);
-    int selectedRow = 0;
+    if (ranking.size() == 0) {
+      terminal.printLineCentered("The leaderboard is empty.");
+      terminal.flushChanges();
+      return;
+    }
+    int rowsPerPage = leaderboardView.getRowsPerPage(EDITING_GUIDE_LINES + EDITING_MENU_LINES);
+    int selectedPlace = 1;
     KeyType input = null;
     while (input != KeyType.Enter) {
+      drawLeaderboardEditor(ranking, selectedPlace, rowsPerPage);
       input = terminal.getUserInput();
-      switch (input) {
-        case ArrowDown -> selectedRow = (selectedRow + 1) % leaderboard.size();
-        case ArrowUp -> selectedRow = selectedRow == 0 ? leaderboard.size() - 1 : (selectedRow - 1);
-        default -> {}
-      }
-      printEditingLeaderboardGuide();
-      leaderboardView.printLeaderboardHighlightingRow(leaderboard, selectedRow, Color.CYAN);
+      selectedPlace =
+          switch (input) {
+            case ArrowDown -> selectedPlace % ranking.size() + 1;
+            case ArrowUp -> (selectedPlace == 1) ? ranking.size() : selectedPlace - 1;
+            case PageDown -> Math.min(ranking.size(), selectedPlace + rowsPerPage);
+            case PageUp -> Math.max(1, selectedPlace - rowsPerPage);
+            case Home -> 1;
+            case End -> ranking.size();
+            default -> selectedPlace;
+          };
     }
-    List<User> scores = new ArrayList<>(leaderboard.values().stream().toList());
-    User selectedUser = scores.get(selectedRow);
+    User selectedUser = ranking.getUserAt(selectedPlace).orElseThrow();
     terminal.printLineCentered("Editing the user: %s".formatted(selectedUser.userName));
     terminal.printLineCentered("Select action:");
     terminal.printLineCentered(
@@ -181,14 +445,12 @@ public class TerminalGameView {
   }
 
   public String promptForPassword() throws IOException {
-    UserScoreStorage scoreStorage = new UserScoreStorage();
-    LoginView loginView = new LoginView(terminal, scoreStorage.readUserData());
+    LoginView loginView = new LoginView(terminal, leaderboardRepository.getUsers());
     return loginView.promptForPassword();
   }
 
   public String promptForUsername() throws IOException {
-    UserScoreStorage scoreStorage = new UserScoreStorage();
-    LoginView loginView = new LoginView(terminal, scoreStorage.readUserData());
+    LoginView loginView = new LoginView(terminal, leaderboardRepository.getUsers());
     return loginView.promptForUsername();
   }
 
@@ -216,12 +478,23 @@ public class TerminalGameView {
     }
   }
 
+  /* Only the page holding the selected place is drawn. It is drawn as a frame, so moving the
+   * selection within the page only sends the two rows whose colour has changed.
+   */
+  private void drawLeaderboardEditor(LeaderboardIndex ranking, int selectedPlace, int rowsPerPage)
+      throws IOException {
+    int firstPlace = (selectedPlace - 1) / rowsPerPage * rowsPerPage + 1;
+    terminal.beginFrame();
+    printEditingLeaderboardGuide();
+    leaderboardView.printPage(ranking, firstPlace, rowsPerPage, selectedPlace, Color.CYAN);
+    terminal.endFrame();
+  }
+
   private void printEditingLeaderboardGuide() throws IOException {
-    terminal.resetCursorPosition();
     terminal.printLineCentered("Editing the leaderboard.");
     terminal.printLineCentered("Use arrows to select the row to edit.");
+    terminal.printLineCentered("Page Up, Page Down, Home and End move a page or to either end.");
     terminal.printLineCentered("Press enter to confirm your selection.");
-    terminal.flushChanges();
   }
 
   private void runEditUsername(User selectedUser, Map<String, User> leaderboard)
@@ -229,15 +502,11 @@ public class TerminalGameView {
     LoginView loginView = new LoginView(terminal, leaderboard);
     Optional<User> loginAttempt = loginView.login();
     if (loginAttempt.isPresent() && loginAttempt.get().equals(selectedUser)) {
-      leaderboard.remove(selectedUser.userName, selectedUser);
       String oldUsername = selectedUser.userName;
       String newUserName = loginView.promptForNewUserName();
-      selectedUser.userName = newUserName;
-      leaderboard.put(newUserName, selectedUser);
-      UserScoreStorage storage = new UserScoreStorage();
-      storage.writeUserData(leaderboard);
+      leaderboardRepository.renameUser(oldUsername, newUserName);
       terminal.printLineCentered(
-          "Successfully renamed the user: %s to %s".formatted(oldUsername, selectedUser.userName));
+          "Successfully renamed the user: %s to %s".formatted(oldUsername, newUserName));
     }
   }
 
@@ -250,28 +519,38 @@ public class TerminalGameView {
       return;
     }
 
-    leaderboard.remove(selectedUser.userName, selectedUser);
-    UserScoreStorage storage = new UserScoreStorage();
-    storage.writeUserData(leaderboard);
+    leaderboardRepository.deleteUser(selectedUser.userName);
     terminal.printLineCentered(
         "Successfully deleted the user: %s".formatted(selectedUser.userName));
   }
 
-  private class RedrawOnResize implements TerminalResizeListener {
-    @Override
-    public void onResized(
-        com.googlecode.lanterna.terminal.Terminal terminal, TerminalSize terminalSize) {
+  /* A resize can leave parts of the old screen behind, so the screen is cleared first.
+   * Clearing through our wrapper also makes the next frame a full redraw.
+   */
+  private void redraw() {
+    synchronized (this) {
+      if (board == null) {
+        // The game hasn't been drawn yet, and the first frame clears the screen anyway.
+        return;
+      }
       try {
         terminal.clearScreen();
-        if (!terminal.getCursorPosition().equals(0, 0)) {
-          // Prevents repeated updates without clearing the screen on application startup.
-          // The problem was that when starting up the grid would get printed two times and those
-          // left-overs wouldn't get cleared unless the user resized the window.
-          updateDisplay(score, grid);
-        }
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
+      layout = null;
+    }
+    draw();
+  }
+
+  /* Resizes are merged with the other updates of the screen instead of being drawn
+   * from the listener callback.
+   */
+  private class RedrawOnResize implements TerminalResizeListener {
+    @Override
+    public void onResized(
+        com.googlecode.lanterna.terminal.Terminal resizedTerminal, TerminalSize terminalSize) {
+      renderScheduler.requestFullRedraw();
     }
   }
 }
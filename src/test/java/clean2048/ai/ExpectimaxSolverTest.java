@@ -0,0 +1,65 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import clean2048.engine.BitboardGameEngine;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+public class ExpectimaxSolverTest {
+
+  @Test
+  public void noMoveIsSuggestedWhenTheGameIsOver() {
+    // Alternating 2s and 4s, no tile can move or merge.
+    long board = 0x1212212112122121L;
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    assert (solver.bestMove(board, Duration.ofMillis(10)).isEmpty());
+  }
+
+  @Test
+  public void suggestedMoveIsLegal() {
+    // A single 2 in the top left corner, so only RIGHT and DOWN change the board.
+    long board = 0x1L;
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    Optional<Direction> move = solver.bestMove(board, 3);
+    assert (move.isPresent());
+    assert (move.get() == Direction.RIGHT || move.get() == Direction.DOWN);
+  }
+
+  @Test
+  public void transpositionTableIsHitWhenPositionsRepeat() {
+    long board = 0x0000_0000_0021_0012L;
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    solver.bestMove(board, Duration.ofMillis(200));
+    SearchStatistics statistics = solver.getLastSearchStatistics();
+    assert (statistics.completedDepth() >= 2);
+    assert (statistics.nodes() > 0);
+    assert (statistics.cacheHits() > 0);
+  }
+
+  @Test
+  public void solverOutplaysTheFirstHundredMovesWithoutLosing() {
+    BitboardGameEngine engine = new BitboardGameEngine(new SplittableRandom(2048));
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    engine.startGame();
+    for (int i = 0; i < 100; i++) {
+      Optional<Direction> move = solver.bestMove(engine.getBoard(), 2);
+      assert (move.isPresent());
+      engine.takeTurn(move.get());
+    }
+    assert (!engine.isGameOver());
+  }
+
+  @Test
+  public void interruptedSearchStopsRightAway() throws InterruptedException {
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    long board = 0x0000_0000_0021_0012L;
+    Thread search = new Thread(() -> solver.bestMove(board, Duration.ofMinutes(1)));
+    search.start();
+    Thread.sleep(50);
+    search.interrupt();
+    search.join(Duration.ofSeconds(1).toMillis());
+    assert (!search.isAlive());
+  }
+}
@@ -0,0 +1,34 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class MoveHintServiceTest {
+  private static final long BOARD = 0x0000_0000_0021_0012L;
+
+  @Test
+  public void hintIsDeliveredFromTheBackground() throws InterruptedException {
+    BlockingQueue<Direction> hints = new ArrayBlockingQueue<>(1);
+    try (MoveHintService service = new MoveHintService(new ExpectimaxSolver(), Duration.ZERO)) {
+      service.requestHint(BOARD, hints::add);
+      assert (hints.poll(5, TimeUnit.SECONDS) != null);
+    }
+  }
+
+  @Test
+  public void cancelledHintIsNeverDelivered() throws InterruptedException {
+    BlockingQueue<Direction> hints = new ArrayBlockingQueue<>(1);
+    try (MoveHintService service =
+        new MoveHintService(new ExpectimaxSolver(), Duration.ofSeconds(30))) {
+      service.requestHint(BOARD, hints::add);
+      Thread.sleep(50);
+      // Stops the search, which would otherwise still return the move found so far.
+      service.cancel();
+      assert (hints.poll(500, TimeUnit.MILLISECONDS) == null);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package clean2048.ai;
+
+import clean2048.engine.BitboardGameEngine;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class ParallelExpectimaxSolverTest {
+
+  @Test
+  public void parallelSearchEvaluatesMovesLikeTheSequentialOne() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    BitboardGameEngine engine = new BitboardGameEngine(new SplittableRandom(2048));
+    ExpectimaxSolver sequential = new ExpectimaxSolver();
+    ParallelExpectimaxSolver parallel = new ParallelExpectimaxSolver(pool);
+    engine.startGame();
+    try {
+      for (int i = 0; i < 30; i++) {
+        long board = engine.getBoard();
+        int depth = 1 + i % 3;
+        assert (Arrays.equals(
+            sequential.evaluateMoves(board, depth), parallel.evaluateMoves(board, depth)));
+        engine.takeTurn(sequential.bestMove(board, depth).orElseThrow());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void parallelSearchStopsWhenTheTimeBudgetRunsOut() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    ParallelExpectimaxSolver solver = new ParallelExpectimaxSolver(pool);
+    try {
+      long start = System.nanoTime();
+      assert (solver.bestMove(0x0000_0000_0021_0012L, Duration.ofMillis(100)).isPresent());
+      assert (System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+      assert (solver.getLastSearchStatistics().completedDepth() >= 1);
+      assert (solver.getLastSearchStatistics().nodes() > 0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void sharedTableOnlyReturnsValuesForTheExactDepth() {
+    SharedTranspositionTable table = new SharedTranspositionTable(4);
+    table.put(0x1234L, 3, 42.5);
+    assert (table.get(0x1234L, 3) == 42.5);
+    assert (Double.isNaN(table.get(0x1234L, 2)));
+    assert (Double.isNaN(table.get(0x4321L, 3)));
+    table.clear();
+    assert (Double.isNaN(table.get(0x1234L, 3)));
+    assert (table.getHits() == 1 && table.getLookups() == 4);
+  }
+}
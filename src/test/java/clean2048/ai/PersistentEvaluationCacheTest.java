@@ -0,0 +1,90 @@
+package clean2048.ai;
+
+import clean2048.controller.Direction;
+import clean2048.engine.BitboardGameEngine;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentEvaluationCacheTest {
+  // A 2 in the top left corner and a 4 to the right of it.
+  private static final long BOARD = 0x21L;
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("solver-cache", null);
+    file.toFile().deleteOnExit();
+  }
+
+  @Test
+  public void allSymmetriesOfAPositionShareOneEntry() throws IOException {
+    PersistentEvaluationCache cache = new PersistentEvaluationCache(file, 10);
+    cache.put(BOARD, Direction.DOWN, 123.0, 3);
+    for (int symmetry = 0; symmetry < BoardSymmetry.COUNT; symmetry++) {
+      long image = BoardSymmetry.apply(BOARD, symmetry);
+      Optional<PersistentEvaluationCache.CachedEvaluation> cached = cache.get(image, 1);
+      assert (cached.isPresent());
+      assert (cached.get().value() == 123.0 && cached.get().depth() == 3);
+      // The stored move has to do the same thing to the image as DOWN does to the board.
+      long expected =
+          BoardSymmetry.apply(BitboardGameEngine.move(BOARD, Direction.DOWN), symmetry);
+      assert (BitboardGameEngine.move(image, cached.get().move()) == expected);
+    }
+  }
+
+  @Test
+  public void entriesSurviveReopeningTheFile() throws IOException {
+    new PersistentEvaluationCache(file, 10).put(BOARD, Direction.RIGHT, 5.0, 2);
+    PersistentEvaluationCache reopened = new PersistentEvaluationCache(file, 10);
+    assert (reopened.get(BOARD, 2).orElseThrow().move() == Direction.RIGHT);
+    assert (reopened.get(BOARD, 3).isEmpty());
+    // A cache of a different size can't reuse the file and starts empty.
+    assert (new PersistentEvaluationCache(file, 11).get(BOARD, 1).isEmpty());
+  }
+
+  @Test
+  public void replacingTheFileLeavesCachesStillUsingItIntact() throws IOException {
+    PersistentEvaluationCache cache = new PersistentEvaluationCache(file, 10);
+    cache.put(BOARD, Direction.RIGHT, 5.0, 2);
+    // Stands in for another game process, which would crash if the file were cut short.
+    new PersistentEvaluationCache(file, 11).put(BOARD, Direction.LEFT, 7.0, 4);
+
+    assert (cache.get(BOARD, 2).orElseThrow().move() == Direction.RIGHT);
+    assert (new PersistentEvaluationCache(file, 11).get(BOARD, 4).isPresent());
+  }
+
+  @Test
+  public void shallowestEntryIsEvictedWhenAllSlotsAreTaken() throws IOException {
+    PersistentEvaluationCache cache = new PersistentEvaluationCache(file, 1);
+    cache.put(0x1L, Direction.RIGHT, 1.0, 5);
+    cache.put(0x2L, Direction.RIGHT, 2.0, 2);
+    cache.put(0x3L, Direction.RIGHT, 3.0, 7);
+    assert (cache.get(0x1L, 1).isPresent());
+    assert (cache.get(0x2L, 1).isEmpty());
+    assert (cache.get(0x3L, 1).isPresent());
+    // Nothing is evicted for the sake of a shallower result.
+    cache.put(0x4L, Direction.RIGHT, 4.0, 1);
+    assert (cache.get(0x4L, 1).isEmpty());
+  }
+
+  @Test
+  public void solverStartsFromTheCachedDepth() throws IOException {
+    PersistentEvaluationCache cache = new PersistentEvaluationCache(file, 10);
+    ExpectimaxSolver solver = new ExpectimaxSolver();
+    solver.setPersistentCache(cache);
+    Optional<Direction> move = solver.bestMove(BOARD, Duration.ofMillis(20));
+    int completedDepth = solver.getLastSearchStatistics().completedDepth();
+    assert (cache.get(BOARD, completedDepth).orElseThrow().move() == move.orElseThrow());
+
+    ExpectimaxSolver nextRun = new ExpectimaxSolver();
+    nextRun.setPersistentCache(cache);
+    nextRun.bestMove(BOARD, Duration.ZERO);
+    assert (nextRun.getLastSearchStatistics().completedDepth() >= completedDepth);
+  }
+}
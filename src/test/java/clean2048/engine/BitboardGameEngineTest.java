@@ -0,0 +1,105 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class BitboardGameEngineTest {
+
+  @Test
+  public void newEngineStartsWithAnEmptyBoard() {
+    BitboardGameEngine engine = new BitboardGameEngine();
+    for (int[] row : engine.getSimplifiedGrid()) {
+      for (int tile : row) {
+        assert (tile == 0);
+      }
+    }
+  }
+
+  @Test
+  public void encodingAGridAndReadingItBackIsLossless() {
+    int[][] grid = {{2, 0, 4, 8}, {0, 0, 0, 0}, {16, 32, 64, 128}, {256, 512, 1024, 2048}};
+    BitboardGameEngine engine = new BitboardGameEngine();
+    engine.board = BitboardGameEngine.encode(grid);
+    assert (Arrays.deepEquals(engine.getSimplifiedGrid(), grid));
+  }
+
+  @Test
+  public void shiftRightMergesTheRightmostPairFirst() {
+    int[][] grid = {{0, 2, 2, 2}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    BitboardGameEngine engine = new BitboardGameEngine();
+    engine.board = BitboardGameEngine.encode(grid);
+    engine.shift(Direction.RIGHT);
+    int[] row = engine.getSimplifiedGrid()[0];
+    assert (Arrays.equals(row, new int[] {0, 0, 2, 4}));
+    assert (engine.getScore() == 4);
+  }
+
+  @Test
+  public void shiftUpFlushesTheContentsUpwards() {
+    int[][] grid = {{0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {2, 4, 2, 0}};
+    BitboardGameEngine engine = new BitboardGameEngine();
+    engine.board = BitboardGameEngine.encode(grid);
+    engine.shift(Direction.UP);
+    int[] row = engine.getSimplifiedGrid()[0];
+    assert (Arrays.equals(row, new int[] {2, 4, 2, 0}));
+  }
+
+  @Test
+  public void fullBoardWithoutMergesIsGameOver() {
+    int[][] grid = {{2, 4, 2, 4}, {4, 2, 4, 2}, {2, 4, 2, 4}, {4, 2, 4, 2}};
+    BitboardGameEngine engine = new BitboardGameEngine();
+    engine.board = BitboardGameEngine.encode(grid);
+    assert (engine.isGameOver());
+  }
+
+  @Test
+  public void fullBoardWithAMergeAvailableIsNotGameOver() {
+    int[][] grid = {{2, 4, 2, 4}, {4, 2, 4, 2}, {2, 4, 2, 4}, {4, 2, 4, 4}};
+    BitboardGameEngine engine = new BitboardGameEngine();
+    engine.board = BitboardGameEngine.encode(grid);
+    assert (!engine.isGameOver());
+  }
+
+  @Test
+  public void shiftsMatchTheReferenceEngineOnRandomBoards() {
+    Random random = new Random(2048);
+    for (int i = 0; i < 1000; i++) {
+      int[][] grid = randomGrid(random);
+      for (Direction direction : Direction.values()) {
+        GameEngine reference = new GameEngine(BitboardGameEngine.DIMENSION);
+        for (int y = 0; y < grid.length; y++) {
+          for (int x = 0; x < grid.length; x++) {
+            reference.getGrid()[y][x] = new Tile(grid[y][x]);
+          }
+        }
+        BitboardGameEngine engine = new BitboardGameEngine();
+        engine.board = BitboardGameEngine.encode(grid);
+
+        assert (engine.legalMoves().equals(reference.legalMoves()));
+        reference.shift(direction);
+        engine.shift(direction);
+
+        assert (Arrays.deepEquals(engine.getSimplifiedGrid(), reference.getSimplifiedGrid()));
+        assert (engine.getScore() == reference.getScore());
+      }
+    }
+  }
+
+  private int[][] randomGrid(Random random) {
+    int[][] grid = new int[BitboardGameEngine.DIMENSION][BitboardGameEngine.DIMENSION];
+    for (int[] row : grid) {
+      for (int x = 0; x < row.length; x++) {
+        int exponent = random.nextInt(5);
+        row[x] = (exponent == 0) ? 0 : 1 << exponent;
+      }
+    }
+    return grid;
+  }
+
+  @Test
+  public void enginesWithTheSameSeedPlayOutTheSameGame() {
+    SeededGames.assertSameSeedPlaysOutTheSameGame(BitboardGameEngine::new);
+  }
+}
@@ -0,0 +1,102 @@
+package clean2048.engine;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import org.junit.Test;
+
+public class EmptyCellIndexTest {
+
+  @Test
+  public void newIndexHasAllCellsEmpty() {
+    EmptyCellIndex index = new EmptyCellIndex(16);
+    assert (index.size() == 16);
+    for (int cell = 0; cell < 16; cell++) {
+      assert (index.isEmpty(cell));
+    }
+  }
+
+  @Test
+  public void markingCellsUpdatesTheIndexIdempotently() {
+    EmptyCellIndex index = new EmptyCellIndex(16);
+    index.markOccupied(3);
+    index.markOccupied(3);
+    index.markOccupied(15);
+    assert (index.size() == 14);
+    assert (!index.isEmpty(3));
+    index.markEmpty(3);
+    index.markEmpty(3);
+    assert (index.size() == 15);
+    assert (index.isEmpty(3));
+    assert (!index.isEmpty(15));
+  }
+
+  @Test
+  public void randomEmptyCellIsDrawnUniformlyFromTheEmptyCellsOnly() {
+    final int cellCount = 100;
+    final int samplesPerCell = 10_000;
+    EmptyCellIndex index = new EmptyCellIndex(cellCount);
+    for (int cell = 0; cell < cellCount; cell += 3) {
+      index.markOccupied(cell);
+    }
+
+    SplittableRandom random = new SplittableRandom(2048);
+    int[] counts = new int[cellCount];
+    for (int i = 0; i < index.size() * samplesPerCell; i++) {
+      counts[index.getRandomEmptyCell(random)]++;
+    }
+
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (cell % 3 == 0) {
+        assert (counts[cell] == 0);
+      } else {
+        assert (Math.abs(counts[cell] - samplesPerCell) < samplesPerCell / 20);
+      }
+    }
+  }
+
+  @Test
+  public void costOfPickingAnEmptyCellDoesNotGrowWithOccupancy() {
+    final int cellCount = 1 << 20;
+    final int picks = 10_000;
+    EmptyCellIndex halfFull = new EmptyCellIndex(cellCount);
+    EmptyCellIndex almostFull = new EmptyCellIndex(cellCount);
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (cell % 2 == 0) {
+        halfFull.markOccupied(cell);
+      }
+      if (cell % 10_000 != 0) {
+        almostFull.markOccupied(cell);
+      }
+    }
+
+    // Rejection sampling would need around 10000 random numbers per pick on the almost full
+    // board. Counting them instead of timing the picks keeps the test independent of the load
+    // of the machine; the timings are measured by the JMH benchmarks.
+    assert (countRandomNumbers(halfFull, picks) <= 2 * picks);
+    assert (countRandomNumbers(almostFull, picks) <= 2 * picks);
+  }
+
+  private long countRandomNumbers(EmptyCellIndex index, int picks) {
+    CountingRandom random = new CountingRandom(new SplittableRandom(2048));
+    for (int i = 0; i < picks; i++) {
+      assert (index.isEmpty(index.getRandomEmptyCell(random)));
+    }
+    return random.count;
+  }
+
+  /* Every random number the default methods of RandomGenerator derive goes through nextLong. */
+  private static class CountingRandom implements RandomGenerator {
+    private final RandomGenerator random;
+    private long count;
+
+    private CountingRandom(RandomGenerator random) {
+      this.random = random;
+    }
+
+    @Override
+    public long nextLong() {
+      count++;
+      return random.nextLong();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class FlatGameEngineTest {
+
+  @Test
+  public void newEngineStartsWithAnEmptyBoard() {
+    FlatGameEngine engine = new FlatGameEngine(8);
+    for (int[] row : engine.getSimplifiedGrid()) {
+      for (int tile : row) {
+        assert (tile == 0);
+      }
+    }
+  }
+
+  @Test
+  public void shiftLeftMergesConsecutiveTilesEvenIfNotAdjacent() {
+    int[][] grid = {{2, 0, 2, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    FlatGameEngine engine = engineWith(grid);
+    engine.shift(Direction.LEFT);
+    assert (Arrays.equals(engine.getSimplifiedGrid()[0], new int[] {4, 0, 0, 0}));
+    assert (engine.getScore() == 4);
+  }
+
+  @Test
+  public void shiftDownFlushesTheContentsDownwards() {
+    int[][] grid = {{2, 4, 2, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    FlatGameEngine engine = engineWith(grid);
+    engine.shift(Direction.DOWN);
+    assert (Arrays.equals(engine.getSimplifiedGrid()[3], new int[] {2, 4, 2, 0}));
+  }
+
+  @Test
+  public void shiftThatMovesNothingReportsNoChange() {
+    int[][] grid = {{2, 4, 0, 0}, {4, 2, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    FlatGameEngine engine = engineWith(grid);
+    assert (!engine.shift(Direction.LEFT));
+    assert (!engine.shift(Direction.UP));
+    assert (engine.shift(Direction.RIGHT));
+  }
+
+  @Test
+  public void shiftsMatchTheReferenceEngineOnRandomBoards() {
+    Random random = new Random(2048);
+    for (int dimension : new int[] {2, 3, 5, 8, 13}) {
+      for (int i = 0; i < 200; i++) {
+        int[][] grid = randomGrid(random, dimension);
+        for (Direction direction : Direction.values()) {
+          GameEngine reference = new GameEngine(dimension);
+          for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+              reference.getGrid()[y][x] = new Tile(grid[y][x]);
+            }
+          }
+          FlatGameEngine engine = engineWith(grid);
+
+          assert (engine.legalMoves().equals(reference.legalMoves()));
+          reference.shift(direction);
+          engine.shift(direction);
+
+          assert (Arrays.deepEquals(engine.getSimplifiedGrid(), reference.getSimplifiedGrid()));
+          assert (engine.getScore() == reference.getScore());
+        }
+      }
+    }
+  }
+
+  private FlatGameEngine engineWith(int[][] grid) {
+    FlatGameEngine engine = new FlatGameEngine(grid.length);
+    for (int y = 0; y < grid.length; y++) {
+      for (int x = 0; x < grid.length; x++) {
+        int value = grid[y][x];
+        engine.setCell(
+            y * grid.length + x, (byte) ((value == 0) ? 0 : Integer.numberOfTrailingZeros(value)));
+      }
+    }
+    return engine;
+  }
+
+  private int[][] randomGrid(Random random, int dimension) {
+    int[][] grid = new int[dimension][dimension];
+    for (int[] row : grid) {
+      for (int x = 0; x < row.length; x++) {
+        int exponent = random.nextInt(5);
+        row[x] = (exponent == 0) ? 0 : 1 << exponent;
+      }
+    }
+    return grid;
+  }
+
+  @Test
+  public void enginesWithTheSameSeedPlayOutTheSameGame() {
+    SeededGames.assertSameSeedPlaysOutTheSameGame(random -> new FlatGameEngine(6, random));
+  }
+}
@@ -1,9 +1,22 @@
 package clean2048.engine;
 
 import clean2048.controller.Direction;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
 import org.junit.Test;
 
 public class GameEngineTest {
+  private static final int ALLOCATION_CHECK_TURNS = 50_000;
+  // An object header alone takes at least 12 bytes, rounded up to 16.
+  private static final long MIN_OBJECT_BYTES = 16;
 
   @Test
   public void initialisingTheGridSetsAllTilesTo0() {
@@ -87,4 +100,181 @@ public class GameEngineTest {
     assert (mergedRow[2].getValue() == 2);
     assert (mergedRow[3].getValue() == 0);
   }
+
+  @Test
+  public void randomEmptyCellCanBeFoundBeyondTheFirstHundredCells() {
+    Tile[][] grid = GridUtil.initialiseGrid(128);
+    for (Tile[] row : grid) {
+      Arrays.fill(row, new Tile(2));
+    }
+    grid[120][110] = Tile.getEmptyTile();
+    GridUtil.Position emptyCell = GridUtil.getRandomEmptyCell(grid, new SplittableRandom());
+    assert (emptyCell.x() == 110);
+    assert (emptyCell.y() == 120);
+  }
+
+  @Test
+  public void enginesWithTheSameSeedPlayOutTheSameGame() {
+    SeededGames.assertSameSeedPlaysOutTheSameGame(random -> new GameEngine(4, random));
+  }
+
+  @Test
+  public void takingATurnDoesNotAllocate() {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    GameEngine engine = new GameEngine(64, new SplittableRandom(2048));
+    Direction[] moves = Direction.values();
+    engine.startGame();
+    for (int i = 0; i < 1_000; i++) {
+      engine.takeTurn(moves[i % moves.length]);
+      engine.isGameOver();
+    }
+
+    long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < ALLOCATION_CHECK_TURNS; i++) {
+      engine.takeTurn(moves[i % moves.length]);
+      engine.isGameOver();
+    }
+    long allocatedAfter = threads.getCurrentThreadAllocatedBytes();
+
+    // Whether the JIT has compiled the move path yet depends on the JVM flags and on what ran
+    // before, and compiling may allocate a little on this thread. Spread over many turns that
+    // stays far below the smallest object, which even one allocation per turn would reach.
+    // The exact allocation rate is measured by the JMH benchmarks with the GC profiler.
+    assert (!engine.isGameOver());
+    assert ((allocatedAfter - allocatedBefore) / ALLOCATION_CHECK_TURNS < MIN_OBJECT_BYTES);
+  }
+
+  @Test
+  public void legalMovesAreTheMovesThatChangeTheGrid() {
+    Tile[] row = {new Tile(2), new Tile(4), Tile.getEmptyTile(), Tile.getEmptyTile()};
+    GameEngine gameEngine = new GameEngine(4);
+    gameEngine.getGrid()[0] = row;
+    assert (gameEngine.legalMoves().equals(EnumSet.of(Direction.RIGHT, Direction.DOWN)));
+  }
+
+  @Test
+  public void tilesWrittenThroughTheGridAreNoLongerEmptyCells() {
+    GameEngine gameEngine = new GameEngine(2, new SplittableRandom(2048));
+    gameEngine.startGame();
+    Tile[][] grid = gameEngine.getGrid();
+    grid[0] = new Tile[] {new Tile(2), new Tile(4)};
+    grid[1] = new Tile[] {new Tile(8), Tile.getEmptyTile()};
+    assert (!gameEngine.isGameOver());
+
+    gameEngine.getGrid()[1][1] = new Tile(16);
+    assert (gameEngine.isGameOver());
+  }
+
+  @Test
+  public void legalMovesMatchTheOutcomeOfShiftingOnRandomBoards() {
+    Random random = new Random(2048);
+    for (int i = 0; i < 500; i++) {
+      Tile[][] grid = GridUtil.initialiseGrid(5);
+      for (Tile[] row : grid) {
+        for (int x = 0; x < row.length; x++) {
+          int exponent = random.nextInt(4);
+          row[x] = Tile.of((exponent == 0) ? 0 : 1 << exponent);
+        }
+      }
+      GameEngine gameEngine = new GameEngine(5);
+      gameEngine.setGrid(grid);
+      Set<Direction> legalMoves = gameEngine.legalMoves();
+      for (Direction direction : Direction.values()) {
+        GameEngine shifted = new GameEngine(5);
+        shifted.setGrid(grid);
+        assert (legalMoves.contains(direction) == shifted.shift(direction));
+      }
+    }
+  }
+
+  @Test
+  public void fullBoardWithoutMergesIsGameOver() {
+    GameEngine gameEngine = new GameEngine(2);
+    gameEngine.setGrid(new Tile[][] {{new Tile(2), new Tile(4)}, {new Tile(4), new Tile(2)}});
+    assert (gameEngine.isGameOver());
+    assert (gameEngine.legalMoves().isEmpty());
+  }
+
+  @Test
+  public void incrementalHashMatchesHashComputedFromScratch() {
+    Random random = new Random(2048);
+    Direction[] moves = Direction.values();
+    for (int game = 0; game < 20; game++) {
+      GameEngine gameEngine = new GameEngine(2 + game % 5, new SplittableRandom(game));
+      gameEngine.startGame();
+      assert (gameEngine.getZobristHash() == gameEngine.computeZobristHash());
+      while (!gameEngine.isGameOver()) {
+        gameEngine.takeTurn(moves[random.nextInt(moves.length)]);
+        assert (gameEngine.getZobristHash() == gameEngine.computeZobristHash());
+      }
+    }
+  }
+
+  @Test
+  public void equalBoardsHaveEqualHashes() {
+    Tile[][] grid = {{new Tile(2), Tile.getEmptyTile()}, {new Tile(4), new Tile(2)}};
+    GameEngine first = new GameEngine(2);
+    first.setGrid(grid);
+    GameEngine second = new GameEngine(2);
+    second.setGrid(new Tile[][] {{Tile.getEmptyTile(), new Tile(2)}, {new Tile(4), new Tile(2)}});
+    assert (first.getZobristHash() != second.getZobristHash());
+    second.shift(Direction.LEFT);
+    assert (first.getZobristHash() == second.getZobristHash());
+    assert (new GameEngine(2).getZobristHash() == 0);
+  }
+
+  @Test
+  public void moveDeltaDescribesSlidesMergesAndTheSpawn() {
+    GameEngine gameEngine = new GameEngine(4, new SplittableRandom(2048));
+    gameEngine.getGrid()[0] =
+        new Tile[] {Tile.getEmptyTile(), new Tile(2), new Tile(2), new Tile(4)};
+    List<String> events = new ArrayList<>();
+    gameEngine.addMoveListener(
+        delta -> {
+          for (int i = 0; i < delta.getSlideCount(); i++) {
+            events.add(
+                "slide %d->%d %d"
+                    .formatted(delta.getSlideFrom(i), delta.getSlideTo(i), delta.getSlideValue(i)));
+          }
+          for (int i = 0; i < delta.getMergeCount(); i++) {
+            events.add("merge %d %d".formatted(delta.getMergeCell(i), delta.getMergeValue(i)));
+          }
+          assert (delta.getDirection().equals(Optional.of(Direction.LEFT)));
+          assert (delta.hasSpawn());
+          assert (gameEngine.getGrid()[delta.getSpawnCell() / 4][delta.getSpawnCell() % 4]
+                  .getValue()
+              == delta.getSpawnValue());
+        });
+    gameEngine.takeTurn(Direction.LEFT);
+    assert (events.equals(List.of("slide 1->0 2", "slide 2->0 2", "slide 3->1 4", "merge 0 4")));
+  }
+
+  @Test
+  public void replayingMoveDeltasReproducesTheBoard() {
+    Random random = new Random(2048);
+    Direction[] moves = Direction.values();
+    GameEngine gameEngine = new GameEngine(5, new SplittableRandom(2048));
+    int[] replayed = new int[25];
+    gameEngine.addMoveListener(
+        delta -> {
+          for (int i = 0; i < delta.getSlideCount(); i++) {
+            replayed[delta.getSlideFrom(i)] = 0;
+          }
+          for (int i = 0; i < delta.getSlideCount(); i++) {
+            replayed[delta.getSlideTo(i)] = delta.getSlideValue(i);
+          }
+          for (int i = 0; i < delta.getMergeCount(); i++) {
+            replayed[delta.getMergeCell(i)] = delta.getMergeValue(i);
+          }
+          replayed[delta.getSpawnCell()] = delta.getSpawnValue();
+        });
+    gameEngine.startGame();
+    while (!gameEngine.isGameOver()) {
+      gameEngine.takeTurn(moves[random.nextInt(moves.length)]);
+      int[][] grid = gameEngine.getSimplifiedGrid();
+      for (int cell = 0; cell < replayed.length; cell++) {
+        assert (replayed[cell] == grid[cell / 5][cell % 5]);
+      }
+    }
+  }
 }
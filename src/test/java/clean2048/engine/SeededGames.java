@@ -0,0 +1,31 @@
+package clean2048.engine;
+
+import clean2048.controller.Direction;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+
+/* Checks shared by the tests of every Engine implementation. */
+final class SeededGames {
+  private SeededGames() {}
+
+  /* Plays the same random moves on two engines built from generators with the same seed,
+   * comparing the boards and the scores after every move.
+   */
+  static void assertSameSeedPlaysOutTheSameGame(Function<RandomGenerator, Engine> newEngine) {
+    Engine first = newEngine.apply(new SplittableRandom(2048));
+    Engine second = newEngine.apply(new SplittableRandom(2048));
+    first.startGame();
+    second.startGame();
+    Random moves = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      Direction direction = Direction.values()[moves.nextInt(Direction.values().length)];
+      first.takeTurn(direction);
+      second.takeTurn(direction);
+      assert (Arrays.deepEquals(first.getSimplifiedGrid(), second.getSimplifiedGrid()));
+      assert (first.getScore() == second.getScore());
+    }
+  }
+}
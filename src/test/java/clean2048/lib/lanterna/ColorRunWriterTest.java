@@ -0,0 +1,77 @@
+package clean2048.lib.lanterna;
+
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.Terminal;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ColorRunWriterTest {
+  private static final String ESCAPE = "\u001b";
+
+  @Test
+  public void textOfOneColorIsSentAsOneRunWithOneColorChange() throws IOException {
+    ByteArrayOutputStream screen = new ByteArrayOutputStream();
+    CountingOutputStream output = new CountingOutputStream(screen);
+    ColorRunWriter writer = new ColorRunWriter(createAnsiTerminal(output));
+
+    writer.write("ab", TextColor.ANSI.RED);
+    // Blank text doesn't break the run, whatever its color.
+    writer.write(' ', TextColor.ANSI.GREEN);
+    writer.write('c', TextColor.ANSI.RED);
+    writer.write("de", TextColor.ANSI.GREEN);
+    writer.flush();
+    // The terminal is still green, so this run needs no color change.
+    writer.write("fg", TextColor.ANSI.GREEN);
+    writer.flush();
+
+    String expected = ESCAPE + "[31mab c" + ESCAPE + "[32mdefg";
+    assert (screen.toString(StandardCharsets.UTF_8).equals(expected));
+    assert (output.getBytes() == 18);
+    assert (output.getEscapeSequences() == 2);
+  }
+
+  @Test
+  public void writingNothingSendsNothing() throws IOException {
+    CountingOutputStream output = new CountingOutputStream(new ByteArrayOutputStream());
+    ColorRunWriter writer = new ColorRunWriter(createAnsiTerminal(output));
+
+    writer.write("", TextColor.ANSI.RED);
+    writer.flush();
+    assert (output.getBytes() == 0);
+    assert (output.getEscapeSequences() == 0);
+  }
+
+  @Test
+  public void escapesAreCountedWhicheverWayTheyAreWritten() throws IOException {
+    CountingOutputStream output = new CountingOutputStream(new ByteArrayOutputStream());
+    output.write(0x1B);
+    output.write('x');
+    byte[] bytes = (ESCAPE + "[2J" + ESCAPE + "[H").getBytes(StandardCharsets.US_ASCII);
+    output.write(bytes, 0, bytes.length);
+    assert (output.getBytes() == 9);
+    assert (output.getEscapeSequences() == 3);
+  }
+
+  /* Sends the standard SGR sequence for the eight basic colors, like an ANSI terminal. */
+  private static Terminal createAnsiTerminal(OutputStream output) {
+    return (Terminal)
+        Proxy.newProxyInstance(
+            Terminal.class.getClassLoader(),
+            new Class<?>[] {Terminal.class},
+            (proxy, method, args) -> {
+              String sent =
+                  switch (method.getName()) {
+                    case "setForegroundColor" ->
+                        ESCAPE + "[3" + ((TextColor.ANSI) args[0]).ordinal() + "m";
+                    case "putString" -> (String) args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                  };
+              output.write(sent.getBytes(StandardCharsets.UTF_8));
+              return null;
+            });
+  }
+}
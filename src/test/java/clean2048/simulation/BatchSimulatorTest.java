@@ -0,0 +1,49 @@
+package clean2048.simulation;
+
+import clean2048.controller.Direction;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class BatchSimulatorTest {
+
+  @Test
+  public void previewReportsTheScoreOfTheMove() {
+    int[][] grid = {{2, 2, 4, 4}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    assert (MovePolicy.previewMove(grid, Direction.LEFT) == 12);
+    assert (MovePolicy.previewMove(grid, Direction.DOWN) == 0);
+  }
+
+  @Test
+  public void previewRejectsMovesThatDoNotChangeTheGrid() {
+    int[][] grid = {{2, 4, 0, 0}, {4, 2, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}};
+    assert (MovePolicy.previewMove(grid, Direction.LEFT) == -1);
+    assert (MovePolicy.previewMove(grid, Direction.UP) == -1);
+    assert (MovePolicy.previewMove(grid, Direction.RIGHT) == 0);
+  }
+
+  @Test
+  public void everyGameOfTheBatchIsPlayedToTheEnd() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    for (MovePolicy policy : MovePolicy.values()) {
+      SimulationReport report = new BatchSimulator(4, policy, pool).run(50, 2048);
+      assert (report.games() == 50);
+      assert (report.sortedScores().length == 50);
+      assert (report.highestTileHistogram().values().stream().mapToInt(i -> i).sum() == 50);
+      assert (report.totalMoves() > 0);
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void batchesWithTheSameSeedProduceTheSameResults() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    BatchSimulator simulator = new BatchSimulator(5, MovePolicy.GREEDY, pool);
+    SimulationReport first = simulator.run(40, 2048);
+    SimulationReport second = simulator.run(40, 2048);
+    assert (Arrays.equals(first.sortedScores(), second.sortedScores()));
+    assert (first.totalMoves() == second.totalMoves());
+    assert (first.highestTileHistogram().equals(second.highestTileHistogram()));
+    pool.shutdown();
+  }
+}
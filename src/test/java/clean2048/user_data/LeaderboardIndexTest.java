@@ -0,0 +1,82 @@
+package clean2048.user_data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+public class LeaderboardIndexTest {
+  private static final Comparator<User> BY_PLACE =
+      Comparator.<User>comparingInt(user -> -user.highScore).thenComparing(user -> user.userName);
+
+  @Test
+  public void usersAreOrderedByScoreAndThenByName() {
+    LeaderboardIndex index =
+        new LeaderboardIndex(
+            Map.of(
+                "carol", new User("carol", "", 512),
+                "alice", new User("alice", "", 2048),
+                "bob", new User("bob", "", 512)));
+
+    assert (names(index.getTop(3)).equals(List.of("alice", "bob", "carol")));
+    assert (names(index.getTop(10)).equals(List.of("alice", "bob", "carol")));
+    assert (index.getPlace("carol").equals(OptionalInt.of(3)));
+    assert (index.getPlace("dave").isEmpty());
+    assert (index.getUserAt(2).map(user -> user.userName).equals(Optional.of("bob")));
+    assert (index.getUserAt(4).isEmpty());
+  }
+
+  @Test
+  public void queriesMatchSortingAllUsers() {
+    SplittableRandom random = new SplittableRandom(7);
+    LeaderboardIndex index = new LeaderboardIndex();
+    Map<String, User> users = new HashMap<>();
+
+    for (int step = 0; step < 5000; step++) {
+      String userName = "user" + random.nextInt(300);
+      if (random.nextInt(4) == 0) {
+        users.remove(userName);
+        index.remove(userName);
+      } else {
+        User user = new User(userName, "", random.nextInt(100));
+        users.put(userName, user);
+        index.put(user);
+      }
+    }
+
+    List<User> sorted = new ArrayList<>(users.values());
+    sorted.sort(BY_PLACE);
+    assert (index.size() == sorted.size());
+    assert (index.getTop(sorted.size()).equals(sorted));
+    for (int place = 1; place <= sorted.size(); place++) {
+      User user = sorted.get(place - 1);
+      assert (index.getPlace(user.userName).getAsInt() == place);
+      assert (index.getRange(place, 5)
+          .equals(sorted.subList(place - 1, Math.min(sorted.size(), place + 4))));
+      assert (index.getWindowAround(user.userName, 2)
+          .equals(sorted.subList(Math.max(0, place - 3), Math.min(sorted.size(), place + 2))));
+    }
+  }
+
+  @Test
+  public void changedScoreMovesTheUser() {
+    User alice = new User("alice", "", 16);
+    User bob = new User("bob", "", 512);
+    LeaderboardIndex index = new LeaderboardIndex(Map.of("alice", alice, "bob", bob));
+
+    alice.highScore = 4096;
+    index.put(alice);
+
+    assert (names(index.getTop(2)).equals(List.of("alice", "bob")));
+    assert (index.size() == 2);
+  }
+
+  private static List<String> names(List<User> users) {
+    return users.stream().map(user -> user.userName).toList();
+  }
+}
@@ -0,0 +1,149 @@
+package clean2048.user_data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LeaderboardRepositoryTest {
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("user-scores", ".json");
+    Files.delete(file);
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void changesAreWrittenToTheFile() throws IOException {
+    LeaderboardRepository repository = new LeaderboardRepository(new UserScoreStorage(file));
+    repository.updateLeaderboard("alice", "secret", 2048);
+    repository.updateLeaderboard("bob", "hunter2", 512);
+    repository.updateLeaderboard("carol", "", 1024);
+    repository.updateLeaderboard("bob", "hunter2", 4096);
+    assert (repository.getRanking().getPlace("bob").getAsInt() == 1);
+    repository.renameUser("alice", "alicia");
+    repository.deleteUser("bob");
+    repository.deleteUser("carol");
+    assert (repository.getRanking().getPlace("alicia").getAsInt() == 1);
+
+    assert (new UserScoreStorage(file)
+        .readUserData()
+        .equals(Map.of("alicia", new User("alicia", "secret", 2048))));
+  }
+
+  @Test
+  public void writesOfAnotherProcessAreNoticed() throws IOException {
+    LeaderboardRepository repository = new LeaderboardRepository(new UserScoreStorage(file));
+    repository.updateLeaderboard("alice", "secret", 2048);
+    assert (repository.getUsers().size() == 1);
+
+    UserScoreStorage otherProcess = new UserScoreStorage(file);
+    otherProcess.updateLeaderboard("bob", "hunter2", 512);
+    // File systems with a coarse clock may not see a new modification time.
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+    assert (repository.getUsers().keySet().equals(Set.of("alice", "bob")));
+    assert (!repository.verifyUser("bob", "wrong"));
+  }
+
+  @Test
+  public void savesChangeSingleUsersInsteadOfRewritingTheStore() throws IOException {
+    Path directory = Files.createTempDirectory("user-scores");
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      LeaderboardRepository repository = new LeaderboardRepository(new NoRewriteStore(store));
+      repository.updateLeaderboard("alice", "secret", 2048);
+      repository.updateLeaderboard("bob", "hunter2", 512);
+      repository.renameUser("alice", "alicia");
+      repository.deleteUser("bob");
+      assert (store.readUserData().equals(Map.of("alicia", new User("alicia", "secret", 2048))));
+    } finally {
+      deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  public void changesThroughAnotherStoreAreNoticed() throws IOException {
+    Path directory = Files.createTempDirectory("user-scores");
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory);
+        LogStructuredScoreStore otherProcess = new LogStructuredScoreStore(directory)) {
+      LeaderboardRepository repository = new LeaderboardRepository(store);
+      repository.updateLeaderboard("alice", "secret", 2048);
+      assert (repository.getUsers().size() == 1);
+
+      otherProcess.updateLeaderboard("bob", "hunter2", 4096);
+      assert (repository.getRanking().getPlace("bob").getAsInt() == 1);
+      // A change of the other store between this change and the check afterwards.
+      repository.updateLeaderboard("alice", "secret", 8192);
+      otherProcess.deleteUser("bob");
+      assert (repository.getUsers().keySet().equals(Set.of("alice")));
+    } finally {
+      deleteDirectory(directory);
+    }
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /* Fails the test if the leaderboard gets written as a whole. */
+  private static class NoRewriteStore implements ScoreStore {
+    private final ScoreStore store;
+
+    NoRewriteStore(ScoreStore store) {
+      this.store = store;
+    }
+
+    @Override
+    public Map<String, User> readUserData() throws IOException {
+      return store.readUserData();
+    }
+
+    @Override
+    public void writeUserData(Map<String, User> users) {
+      throw new AssertionError("The whole leaderboard was written");
+    }
+
+    @Override
+    public void updateLeaderboard(String userName, String password, int score)
+        throws IOException {
+      store.updateLeaderboard(userName, password, score);
+    }
+
+    @Override
+    public void deleteUser(String userName) throws IOException {
+      store.deleteUser(userName);
+    }
+
+    @Override
+    public void renameUser(String userName, String newUserName) throws IOException {
+      store.renameUser(userName, newUserName);
+    }
+
+    @Override
+    public boolean verifyUser(String userName, String password) throws IOException {
+      return store.verifyUser(userName, password);
+    }
+
+    @Override
+    public long getChangeCount() throws IOException {
+      return store.getChangeCount();
+    }
+  }
+}
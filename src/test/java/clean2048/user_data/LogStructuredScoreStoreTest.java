@@ -0,0 +1,209 @@
+package clean2048.user_data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogStructuredScoreStoreTest {
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("user-scores");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void scoresSurviveReopeningTheStore() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      store.updateLeaderboard("alice", "secret", 1024);
+      store.updateLeaderboard("bob", "hunter2", 512);
+      store.updateLeaderboard("alice", "secret", 2048);
+    }
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory)) {
+      Map<String, User> users = reopened.readUserData();
+      assert (users.equals(
+          Map.of(
+              "alice", new User("alice", "secret", 2048),
+              "bob", new User("bob", "hunter2", 512))));
+      assert (reopened.verifyUser("alice", "secret"));
+      assert (!reopened.verifyUser("alice", "wrong"));
+      assert (reopened.verifyUser("carol", "anything"));
+    }
+  }
+
+  @Test
+  public void lowerScoreDoesNotReplaceTheHighScore() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      store.updateLeaderboard("alice", "secret", 2048);
+      store.updateLeaderboard("alice", "secret", 16);
+      assert (store.readUserData().get("alice").highScore == 2048);
+    }
+  }
+
+  @Test
+  public void writingTheLeaderboardRemovesAndRenamesUsers() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      store.updateLeaderboard("alice", "secret", 2048);
+      store.updateLeaderboard("bob", "hunter2", 512);
+      Map<String, User> users = store.readUserData();
+      users.remove("bob");
+      User alice = users.remove("alice");
+      alice.userName = "alicia";
+      users.put("alicia", alice);
+      store.writeUserData(users);
+    }
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory)) {
+      assert (reopened.readUserData().equals(Map.of("alicia", new User("alicia", "secret", 2048))));
+    }
+  }
+
+  @Test
+  public void usersAreDeletedAndRenamedOneAtATime() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      store.updateLeaderboard("alice", "secret", 2048);
+      store.updateLeaderboard("bob", "hunter2", 512);
+      store.updateLeaderboard("carol", "", 1024);
+      long changeCount = store.getChangeCount();
+      store.deleteUser("bob");
+      store.renameUser("alice", "alicia");
+      store.renameUser("carol", "carol");
+      store.deleteUser("dave");
+      assert (store.getChangeCount() == changeCount + 2);
+    }
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory)) {
+      assert (reopened
+          .readUserData()
+          .equals(
+              Map.of(
+                  "alicia", new User("alicia", "secret", 2048),
+                  "carol", new User("carol", "", 1024))));
+    }
+  }
+
+  @Test
+  public void usersOfTheJsonLeaderboardAreTakenOverOnce() throws IOException {
+    Path jsonFile = directory.resolve(UserScoreStorage.USER_SCORE_STORAGE_FILE_NAME);
+    new UserScoreStorage(jsonFile).updateLeaderboard("alice", "secret", 2048);
+    try (LogStructuredScoreStore store = LogStructuredScoreStore.open(directory)) {
+      assert (store.readUserData().equals(Map.of("alice", new User("alice", "secret", 2048))));
+      store.deleteUser("alice");
+    }
+    try (LogStructuredScoreStore reopened = LogStructuredScoreStore.open(directory)) {
+      assert (reopened.readUserData().isEmpty());
+    }
+  }
+
+  @Test
+  public void compactionFoldsTheLogIntoTheSnapshot() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory, 256)) {
+      for (int score = 1; score <= 1000; score++) {
+        store.updateLeaderboard("user" + (score % 50), "password", score);
+      }
+    }
+    assert (Files.exists(directory.resolve(LogStructuredScoreStore.SNAPSHOT_FILE_NAME)));
+    // Without compaction the log would hold a record for every one of the 1000 scores.
+    assert (countSegments() < 10);
+
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory, 256)) {
+      Map<String, User> users = reopened.readUserData();
+      assert (users.size() == 50);
+      for (int user = 0; user < 50; user++) {
+        int expectedScore = (user == 0) ? 1000 : 950 + user;
+        assert (users.get("user" + user).highScore == expectedScore);
+      }
+    }
+  }
+
+  @Test
+  public void damagedTailOfTheLogIsIgnored() throws IOException {
+    try (LogStructuredScoreStore store = new LogStructuredScoreStore(directory)) {
+      store.updateLeaderboard("alice", "secret", 2048);
+    }
+    Path segment = listSegments().get(0);
+    // A record of 40 bytes, of which a crash only let the first few reach the disk.
+    Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory)) {
+      assert (reopened.readUserData().equals(Map.of("alice", new User("alice", "secret", 2048))));
+      reopened.updateLeaderboard("bob", "hunter2", 512);
+    }
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory)) {
+      assert (reopened.readUserData().size() == 2);
+    }
+  }
+
+  @Test
+  public void storesSharingTheDirectorySeeEachOthersScores() throws IOException {
+    try (LogStructuredScoreStore first = new LogStructuredScoreStore(directory);
+        LogStructuredScoreStore second = new LogStructuredScoreStore(directory)) {
+      first.updateLeaderboard("alice", "secret", 1024);
+      second.updateLeaderboard("bob", "hunter2", 512);
+      second.updateLeaderboard("alice", "secret", 2048);
+      assert (first.readUserData().equals(second.readUserData()));
+      assert (!first.verifyUser("bob", "wrong"));
+      long changeCount = first.getChangeCount();
+      second.deleteUser("bob");
+      assert (first.getChangeCount() > changeCount);
+      first.updateLeaderboard("alice", "secret", 1500);
+      assert (second.readUserData().get("alice").highScore == 2048);
+    }
+    // Both stores appended to the same segment.
+    assert (countSegments() == 1);
+  }
+
+  @Test
+  public void compactionKeepsTheScoresOfEveryStoreSharingTheDirectory() throws IOException {
+    try (LogStructuredScoreStore first = new LogStructuredScoreStore(directory, 256);
+        LogStructuredScoreStore second = new LogStructuredScoreStore(directory, 256)) {
+      for (int score = 1; score <= 1000; score++) {
+        LogStructuredScoreStore store = (score % 2 == 0) ? first : second;
+        store.updateLeaderboard("user" + (score % 50), "password", score);
+      }
+      assert (first.readUserData().equals(second.readUserData()));
+    }
+    assert (countSegments() < 10);
+
+    try (LogStructuredScoreStore reopened = new LogStructuredScoreStore(directory, 256)) {
+      Map<String, User> users = reopened.readUserData();
+      assert (users.size() == 50);
+      for (int user = 0; user < 50; user++) {
+        int expectedScore = (user == 0) ? 1000 : 950 + user;
+        assert (users.get("user" + user).highScore == expectedScore);
+      }
+    }
+  }
+
+  private long countSegments() throws IOException {
+    return listSegments().size();
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(
+              file ->
+                  file.getFileName()
+                      .toString()
+                      .startsWith(LogStructuredScoreStore.SEGMENT_FILE_PREFIX))
+          .sorted()
+          .toList();
+    }
+  }
+}
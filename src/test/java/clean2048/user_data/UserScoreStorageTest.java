@@ -0,0 +1,64 @@
+package clean2048.user_data;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserScoreStorageTest {
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("user-scores", ".json");
+    Files.delete(file);
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void usersSurviveWritingAndReading() throws IOException {
+    Map<String, User> users = new HashMap<>();
+    users.put("alice", new User("alice", "secret", 2048));
+    users.put("bob \"the builder\"", new User("bob \"the builder\"", "", 0));
+    users.put("carol", new User("carol", null, 512));
+
+    UserScoreStorage storage = new UserScoreStorage(file);
+    storage.writeUserData(users);
+
+    assert (storage.readUserData().equals(users));
+  }
+
+  @Test
+  public void fileIsCompatibleWithGson() throws IOException {
+    Map<String, User> users = Map.of("alice", new User("alice", "secret", 2048));
+    UserScoreStorage storage = new UserScoreStorage(file);
+
+    Files.writeString(file, new Gson().toJson(users));
+    assert (storage.readUserData().equals(users));
+
+    storage.writeUserData(users);
+    Map<String, User> readByGson =
+        new Gson()
+            .fromJson(Files.readString(file), new TypeToken<Map<String, User>>() {}.getType());
+    assert (readByGson.equals(users));
+  }
+
+  @Test
+  public void emptyFileIsAnEmptyLeaderboard() throws IOException {
+    UserScoreStorage storage = new UserScoreStorage(file);
+    Files.writeString(file, "");
+    assert (storage.readUserData().isEmpty());
+    Files.writeString(file, "null");
+    assert (storage.readUserData().isEmpty());
+  }
+}
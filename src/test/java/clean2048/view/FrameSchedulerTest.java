@@ -0,0 +1,114 @@
+package clean2048.view;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class FrameSchedulerTest {
+  private static final Duration FRAME_BUDGET = Duration.ofNanos(10);
+
+  @Test
+  public void framesWithinTheBudgetAreAllDrawnOnTime() {
+    FakeClock clock = new FakeClock();
+    List<Long> drawTimes = new ArrayList<>();
+    AnimationStatistics statistics =
+        new FrameScheduler(FRAME_BUDGET, clock)
+            .play(
+                3,
+                frame -> {
+                  drawTimes.add(clock.time);
+                  clock.time += 4;
+                  return true;
+                });
+
+    assert (drawTimes.equals(List.of(0L, 10L, 20L)));
+    assert (statistics.equals(new AnimationStatistics(3, 0, 4, 4, false)));
+  }
+
+  @Test
+  public void framesWhoseTimeHasPassedAreSkipped() {
+    FakeClock clock = new FakeClock();
+    List<Integer> drawnFrames = new ArrayList<>();
+    AnimationStatistics statistics =
+        new FrameScheduler(FRAME_BUDGET, clock)
+            .play(
+                4,
+                frame -> {
+                  drawnFrames.add(frame);
+                  clock.time += 25;
+                  return true;
+                });
+
+    // Frame 2 was due at 10 but the first frame only finished at 25, when frame 3 was due.
+    assert (drawnFrames.equals(List.of(1, 3, 4)));
+    assert (statistics.equals(new AnimationStatistics(3, 1, 25, 25, false)));
+  }
+
+  @Test
+  public void theLastFrameIsDrawnHoweverLateItIs() {
+    FakeClock clock = new FakeClock();
+    List<Integer> drawnFrames = new ArrayList<>();
+    new FrameScheduler(FRAME_BUDGET, clock)
+        .play(
+            3,
+            frame -> {
+              drawnFrames.add(frame);
+              clock.time += 100;
+              return true;
+            });
+
+    assert (drawnFrames.equals(List.of(1, 3)));
+  }
+
+  @Test
+  public void aNewerStateCutsTheAnimationShort() {
+    FakeClock clock = new FakeClock();
+    List<Integer> drawnFrames = new ArrayList<>();
+    AnimationStatistics statistics =
+        new FrameScheduler(FRAME_BUDGET, clock)
+            .play(
+                4,
+                frame -> {
+                  if (frame == 3) {
+                    return false;
+                  }
+                  drawnFrames.add(frame);
+                  clock.time += 2;
+                  return true;
+                });
+
+    assert (drawnFrames.equals(List.of(1, 2)));
+    assert (statistics.equals(new AnimationStatistics(2, 0, 2, 2, true)));
+  }
+
+  @Test
+  public void anInterruptedWaitCutsTheAnimationShort() {
+    FakeClock clock = new FakeClock();
+    clock.isInterrupted = true;
+    AnimationStatistics statistics =
+        new FrameScheduler(FRAME_BUDGET, clock).play(4, frame -> true);
+
+    assert (statistics.equals(new AnimationStatistics(1, 0, 0, 0, true)));
+  }
+
+  /* Time only passes when a frame is drawn or the scheduler waits. */
+  private static class FakeClock implements FrameScheduler.Clock {
+    private long time;
+    private boolean isInterrupted;
+
+    @Override
+    public long nanoTime() {
+      return time;
+    }
+
+    @Override
+    public boolean sleepUntil(long wakeUpTime) {
+      if (isInterrupted) {
+        return false;
+      }
+      time = Math.max(time, wakeUpTime);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package clean2048.view;
+
+import org.junit.Test;
+
+public class GameScreenLayoutTest {
+  private static final int WIDTH = 80;
+  private static final int HEIGHT = 24;
+
+  @Test
+  public void aBoardWhichFitsIsShownWholeAndCentered() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 4, false);
+
+    assert (layout.getVisibleRows() == 4);
+    assert (layout.getVisibleColumns() == 4);
+    // Four rows, five border lines, the score and the hint.
+    assert (layout.getTopMargin() == (HEIGHT - 11) / 2);
+  }
+
+  @Test
+  public void aLargeBoardIsShownThroughAViewportAsLargeAsTheTerminal() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 128, false);
+
+    assert (layout.getVisibleRows() == 10);
+    assert (layout.getVisibleColumns() == 15);
+    assert (layout.getHorizontalLine().equals(" ".repeat(3) + "-".repeat(74)));
+    assert (layout.getRowMargin().length() == 2);
+  }
+
+  @Test
+  public void theMinimapTakesItsLinesFromTheViewport() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 128, true);
+
+    assert (layout.getMinimapRows() == 8);
+    assert (layout.getMinimapColumns() == 32);
+    assert (layout.getVisibleRows() == 6);
+    assert (layout.getVisibleColumns() == 15);
+    assert (layout.getMinimapMargin().length() == (WIDTH - 32) / 2);
+  }
+
+  @Test
+  public void atLeastOneCellIsShownOnATinyTerminal() {
+    GameScreenLayout layout = new GameScreenLayout(3, 3, 128, false);
+
+    assert (layout.getVisibleRows() == 1);
+    assert (layout.getVisibleColumns() == 1);
+  }
+
+  @Test
+  public void theViewportIsKeptWithinTheBoard() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 128, false);
+
+    assert (layout.clampViewportRow(-3) == 0);
+    assert (layout.clampViewportRow(50) == 50);
+    assert (layout.clampViewportRow(200) == 128 - 10);
+    assert (layout.clampViewportColumn(200) == 128 - 15);
+  }
+
+  @Test
+  public void aBoardWhichFitsHasNowhereToPan() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 4, false);
+
+    assert (layout.clampViewportRow(1) == 0);
+    assert (layout.clampViewportColumn(1) == 0);
+  }
+
+  @Test
+  public void theMinimapSamplesTheMiddleOfEveryBlock() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 128, true);
+
+    // Blocks of 16 rows and of 4 columns.
+    assert (layout.getMinimapSampleRow(0) == 8);
+    assert (layout.getMinimapSampleRow(7) == 120);
+    assert (layout.getMinimapSampleColumn(0) == 2);
+    assert (layout.getMinimapSampleColumn(31) == 126);
+  }
+
+  @Test
+  public void theMinimapOfASmallBoardShowsEveryCell() {
+    GameScreenLayout layout = new GameScreenLayout(WIDTH, HEIGHT, 4, true);
+
+    assert (layout.getMinimapRows() == 4);
+    assert (layout.getMinimapColumns() == 4);
+    for (int cell = 0; cell < 4; cell++) {
+      assert (layout.getMinimapSampleRow(cell) == cell);
+      assert (layout.getMinimapSampleColumn(cell) == cell);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package clean2048.view;
+
+import clean2048.controller.Direction;
+import clean2048.engine.GameEngine;
+import clean2048.engine.MoveDelta;
+import clean2048.engine.Tile;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+public class MoveAnimationTest {
+  private static final int FRAME_COUNT = 4;
+
+  @Test
+  public void tilesSlideACellAtATimeAndTheHalvesOfAMergeStaySeparate() {
+    MoveAnimation animation =
+        animateLeft(new Tile[] {Tile.getEmptyTile(), new Tile(2), new Tile(2), new Tile(4)});
+
+    assert (Arrays.equals(animation.getFrame(0, FRAME_COUNT)[0], new int[] {0, 2, 2, 4}));
+    assert (Arrays.equals(animation.getFrame(2, FRAME_COUNT)[0], new int[] {0, 2, 4, 0}));
+    assert (Arrays.equals(animation.getFrame(3, FRAME_COUNT)[0], new int[] {2, 2, 4, 0}));
+  }
+
+  @Test
+  public void aHalfOfAMergeWhichDoesNotMoveKeepsItsValueUntilTheEnd() {
+    MoveAnimation animation =
+        animateLeft(
+            new Tile[] {new Tile(2), new Tile(2), Tile.getEmptyTile(), Tile.getEmptyTile()});
+
+    assert (Arrays.equals(animation.getFrame(0, FRAME_COUNT)[0], new int[] {2, 2, 0, 0}));
+    assert (Arrays.equals(animation.getFrame(3, FRAME_COUNT)[0], new int[] {2, 0, 0, 0}));
+  }
+
+  @Test
+  public void theSpawnedTileOnlyAppearsInTheFinalState() {
+    MoveAnimation animation =
+        animateLeft(new Tile[] {Tile.getEmptyTile(), new Tile(2), new Tile(2), new Tile(4)});
+
+    for (int frame = 0; frame < FRAME_COUNT; frame++) {
+      int[][] grid = animation.getFrame(frame, FRAME_COUNT);
+      for (int y = 1; y < grid.length; y++) {
+        assert (Arrays.stream(grid[y]).allMatch(tile -> tile == 0));
+      }
+    }
+  }
+
+  @Test
+  public void onlyTheWindowIsAnimated() {
+    MoveAnimation animation =
+        animateLeftInWindow(
+            new Tile[] {Tile.getEmptyTile(), new Tile(2), new Tile(2), new Tile(4)}, 2);
+
+    assert (animation.getFrame(0, FRAME_COUNT).length == 1);
+    assert (Arrays.equals(animation.getFrame(0, FRAME_COUNT)[0], new int[] {2, 4}));
+    assert (Arrays.equals(animation.getFrame(3, FRAME_COUNT)[0], new int[] {4, 0}));
+  }
+
+  @Test
+  public void aTileFromOutsideTheWindowSlidesIntoIt() {
+    MoveAnimation animation =
+        animateLeftInWindow(
+            new Tile[] {
+              Tile.getEmptyTile(), Tile.getEmptyTile(), Tile.getEmptyTile(), new Tile(2)
+            },
+            0,
+            2);
+
+    assert (Arrays.equals(animation.getFrame(0, FRAME_COUNT)[0], new int[] {0, 0}));
+    assert (Arrays.equals(animation.getFrame(2, FRAME_COUNT)[0], new int[] {0, 0}));
+    assert (Arrays.equals(animation.getFrame(3, FRAME_COUNT)[0], new int[] {0, 2}));
+  }
+
+  /* Animates the whole board. */
+  private static MoveAnimation animateLeft(Tile[] firstRow) {
+    GameEngine gameEngine = new GameEngine(firstRow.length, new SplittableRandom(2048));
+    MoveDelta move = swipeLeft(gameEngine, firstRow);
+    return new MoveAnimation(move, gameEngine.getSimplifiedGrid(), 0, 0);
+  }
+
+  /* Animates the columns of the first row from firstColumn to the end. */
+  private static MoveAnimation animateLeftInWindow(Tile[] firstRow, int firstColumn) {
+    return animateLeftInWindow(firstRow, firstColumn, firstRow.length - firstColumn);
+  }
+
+  private static MoveAnimation animateLeftInWindow(Tile[] firstRow, int firstColumn, int columns) {
+    GameEngine gameEngine = new GameEngine(firstRow.length, new SplittableRandom(2048));
+    MoveDelta move = swipeLeft(gameEngine, firstRow);
+    int[][] window = new int[1][columns];
+    for (int x = 0; x < columns; x++) {
+      window[0][x] = gameEngine.getTile(0, firstColumn + x);
+    }
+    return new MoveAnimation(move, window, 0, firstColumn);
+  }
+
+  /* Only the first row of the board holds tiles before the swipe. */
+  private static MoveDelta swipeLeft(GameEngine gameEngine, Tile[] firstRow) {
+    gameEngine.getGrid()[0] = firstRow;
+    MoveDelta[] move = new MoveDelta[1];
+    gameEngine.addMoveListener(delta -> move[0] = delta.copy());
+    gameEngine.takeTurn(Direction.LEFT);
+    // The spawned tile would otherwise land in the first row, which is checked tile by tile.
+    assert (move[0].getSpawnCell() >= firstRow.length);
+    return move[0];
+  }
+}